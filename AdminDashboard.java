@@ -1,9 +1,22 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 class AdminDashboard {
-    private Scanner sc = new Scanner(System.in);
-    static Bus[] buses = new Bus[100];
-    static int busCount = 0;
+    private Scanner sc = BusBookingSystem.CONSOLE;
+    private FleetService fleet = new FleetService();
+    static BusRegistry registry = new BusRegistry();
+    static BookingStore bookings = new BookingStore();
+    static RefundLedger refunds = new RefundLedger();
+    static Analytics analytics = new Analytics();
+    static BookingJournal journal = BookingJournal.disabled();
+    static PaymentProcessor payments = BusBookingSystem.newPaymentProcessor();
 
     void addBus() {
         try {
@@ -13,10 +26,8 @@ class AdminDashboard {
             int id = sc.nextInt();
             
             // Check if ID already exists
-            for (int i = 0; i < busCount; i++) {
-                if (buses[i].getId() == id) {
-                    throw new InvalidBusException("Bus ID " + id + " already exists!");
-                }
+            if (registry.contains(id)) {
+                throw new InvalidBusException("Bus ID " + id + " already exists!");
             }
             
             System.out.print("Enter Bus Number: ");
@@ -30,10 +41,10 @@ class AdminDashboard {
             String type = sc.next();
             
             System.out.print("Enter From Location: ");
-            String from = sc.next();
+            String from = BusBookingSystem.readLine();
             
             System.out.print("Enter To Location: ");
-            String to = sc.next();
+            String to = BusBookingSystem.readLine();
             
             System.out.print("Enter Departure Time (HH:MM): ");
             String time = sc.next();
@@ -47,25 +58,13 @@ class AdminDashboard {
             
             System.out.print("Enter Distance (km): ");
             double distanceKm = sc.nextDouble();
-            if (distanceKm <= 0) {
-                throw new InvalidBusException("Distance must be positive!");
-            }
 
             System.out.print("Enter Price per km (Rs.): ");
             double pricePerKm = sc.nextDouble();
-            if (pricePerKm <= 0) {
-                throw new InvalidBusException("Price per km must be positive!");
-            }
 
-            Bus newBus = new Bus(id, busNo, operator, type, from, to, time, seats, distanceKm, pricePerKm);
-            
-            if (busCount < buses.length) {
-                buses[busCount++] = newBus;
-                System.out.println("\n✓ Bus added successfully!");
-                newBus.show();
-            } else {
-                throw new InvalidBusException("Bus limit reached. Cannot add more buses.");
-            }
+            Bus newBus = fleet.addBus(id, busNo, operator, type, from, to, time, seats, distanceKm, pricePerKm);
+            System.out.println("\n✓ Bus added successfully!");
+            newBus.show();
             
         } catch (InvalidBusException e) {
             System.out.println("\n✗ ERROR: " + e.getMessage());
@@ -76,19 +75,20 @@ class AdminDashboard {
     }
 
     void viewAllBuses() {
-        if (busCount == 0) {
+        if (registry.isEmpty()) {
             System.out.println("\nNo buses available.");
             return;
         }
         
         System.out.println("\n=== ALL BUSES ===\n");
-        for (int i = 0; i < busCount; i++) {
-            buses[i].show();
+        for (Bus bus : fleet.listBuses()) {
+            bus.show();
         }
+        System.out.println("Search cache: " + registry.getSearchCache());
     }
 
     void updateBus() {
-        if (busCount == 0) {
+        if (registry.isEmpty()) {
             System.out.println("No buses available to update.");
             return;
         }
@@ -99,15 +99,7 @@ class AdminDashboard {
             System.out.print("\nEnter Bus ID to update: ");
             int id = sc.nextInt();
             
-            Bus targetBus = null;
-            for (int i = 0; i < busCount; i++) {
-                if (buses[i].getId() == id) {
-                    targetBus = buses[i];
-                    break;
-                }
-            }
-            
-            if (targetBus == null) {
+            if (fleet.getBus(id) == null) {
                 throw new InvalidBusException("Bus with ID " + id + " not found!");
             }
             
@@ -127,72 +119,67 @@ class AdminDashboard {
                 throw new InvalidBusException("Invalid choice!");
             }
             
+            String operator = null, type = null, from = null, to = null, time = null;
+            Double newDistance = null, newPrice = null;
+            
             switch(choice) {
                 case 1:
                     System.out.print("Enter new operator: ");
                     sc.nextLine();
-                    String operator = sc.nextLine();
-                    targetBus.setOperator(operator);
+                    operator = sc.nextLine();
                     break;
                     
                 case 2:
                     System.out.print("Enter new bus type: ");
-                    String type = sc.next();
-                    targetBus.setType(type);
+                    type = sc.next();
                     break;
                     
                 case 3:
                     System.out.print("Enter new from location: ");
-                    String from = sc.next();
-                    targetBus.from = from;
+                    from = BusBookingSystem.readLine();
                     break;
                     
                 case 4:
                     System.out.print("Enter new to location: ");
-                    String to = sc.next();
-                    targetBus.to = to;
+                    to = BusBookingSystem.readLine();
                     break;
                     
                 case 5:
                     System.out.print("Enter new departure time: ");
-                    String time = sc.next();
-                    targetBus.setTime(time);
+                    time = sc.next();
                     break;
                     
                 case 6:
                     System.out.print("Enter new operator: ");
                     sc.nextLine();
                     operator = sc.nextLine();
-                    targetBus.setOperator(operator);
                     
                     System.out.print("Enter new bus type: ");
                     type = sc.next();
-                    targetBus.setType(type);
                     
                     System.out.print("Enter new from location: ");
-                    from = sc.next();
-                    targetBus.from = from;
+                    from = BusBookingSystem.readLine();
                     
                     System.out.print("Enter new to location: ");
-                    to = sc.next();
-                    targetBus.to = to;
+                    to = BusBookingSystem.readLine();
                     
                     System.out.print("Enter new departure time: ");
                     time = sc.next();
-                    targetBus.setTime(time);
                     break;
                 case 7:
                     System.out.print("Enter new distance (km): ");
-                    double newDistance = sc.nextDouble();
+                    newDistance = sc.nextDouble();
                     if (newDistance <= 0) throw new InvalidBusException("Distance must be positive!");
                     System.out.print("Enter new price per km (Rs.): ");
-                    double newPrice = sc.nextDouble();
-                    if (newPrice <= 0) throw new InvalidBusException("Price per km must be positive!");
-                    targetBus.setDistanceKm(newDistance);
-                    targetBus.setPricePerKm(newPrice);
+                    newPrice = sc.nextDouble();
                     break;
             }
             
+            Bus targetBus = fleet.updateBus(id, operator, type, from, to, time, newDistance, newPrice);
+            if (targetBus == null) {
+                throw new InvalidBusException("Bus with ID " + id + " not found!");
+            }
+            
             System.out.println("\n✓ Bus updated successfully!");
             targetBus.show();
             
@@ -205,7 +192,7 @@ class AdminDashboard {
     }
 
     void deleteBus() {
-        if (busCount == 0) {
+        if (registry.isEmpty()) {
             System.out.println("No buses to delete.");
             return;
         }
@@ -216,27 +203,17 @@ class AdminDashboard {
             System.out.print("\nEnter Bus ID to delete: ");
             int id = sc.nextInt();
             
-            int index = -1;
-            for (int i = 0; i < busCount; i++) {
-                if (buses[i].getId() == id) {
-                    index = i;
-                    break;
-                }
-            }
-            
-            if (index == -1) {
+            if (fleet.getBus(id) == null) {
                 throw new InvalidBusException("Bus with ID " + id + " not found!");
             }
             
             System.out.print("Are you sure you want to delete this bus? (yes/no): ");
             String confirm = sc.next();
             
-            if (confirm.equalsIgnoreCase("yes")) {
-                for (int j = index; j < busCount - 1; j++) {
-                    buses[j] = buses[j + 1];
-                }
-                buses[--busCount] = null;
+            MassCancellation.Result cancelled = confirm.equalsIgnoreCase("yes") ? fleet.deleteBus(id) : null;
+            if (cancelled != null) {
                 System.out.println("\n✓ Bus with ID " + id + " deleted successfully.");
+                System.out.println("  " + cancelled);
             } else {
                 System.out.println("Deletion cancelled.");
             }
@@ -248,6 +225,134 @@ class AdminDashboard {
         }
     }
 
+    // Cancels one day's service on one or more buses, refunding every
+    // booking on them
+    void cancelService() {
+        try {
+            System.out.print("\nEnter Journey Date (DD/MM/YYYY): ");
+            LocalDate date = LocalDate.parse(sc.next(), Booking.DATE_FORMAT);
+            System.out.print("Enter Bus IDs to cancel (comma separated): ");
+            String[] ids = sc.next().split(",");
+
+            MassCancellation.Result total = new MassCancellation.Result();
+            for (String text : ids) {
+                int id = Integer.parseInt(text.trim());
+                MassCancellation.Result result = fleet.cancelService(id, date);
+                if (result == null) {
+                    System.out.println("✗ Bus with ID " + id + " not found, skipped.");
+                } else {
+                    total.add(result);
+                }
+            }
+            System.out.println("\n✓ Service cancelled: " + total);
+            System.out.println("  Total refunded to date: Rs." + String.format("%.2f", refunds.getTotalRefunded())
+                    + " across " + refunds.size() + " refunds.");
+        } catch (DateTimeParseException e) {
+            System.out.println("\n✗ ERROR: Invalid date format! Use DD/MM/YYYY");
+        } catch (NumberFormatException e) {
+            System.out.println("\n✗ ERROR: Bus IDs must be numbers.");
+        }
+    }
+
+    // Writes every confirmed ticket to one text file
+    void exportTickets() {
+        System.out.print("\nEnter export file name: ");
+        Path file = Path.of(sc.next());
+        
+        List<Booking> confirmed = new ArrayList<>();
+        for (Booking booking : bookings.all()) {
+            if (!booking.isCancelled()) confirmed.add(booking);
+        }
+        try {
+            long start = System.nanoTime();
+            int count = ReceiptRenderer.forThread().export(confirmed, file);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("\n✓ Exported " + count + " tickets to " + file + " in " + millis + " ms.");
+        } catch (IOException e) {
+            System.out.println("\n✗ ERROR: Could not export tickets: " + e.getMessage());
+        }
+    }
+
+    // Latency percentiles and failure counts since start-up or the last
+    // reset, optionally saved as JSON for other tools
+    void showMetrics() {
+        System.out.println("\n=== PERFORMANCE METRICS ===");
+        System.out.println(Metrics.report());
+        System.out.print("\nSave as JSON (file name, or - to skip): ");
+        String name = sc.next();
+        if (!name.equals("-")) {
+            try {
+                Files.writeString(Path.of(name), Metrics.toJson(new StringBuilder()));
+                System.out.println("✓ Metrics saved to " + name);
+            } catch (IOException e) {
+                System.out.println("✗ ERROR: Could not save metrics: " + e.getMessage());
+            }
+        }
+        System.out.print("Reset the figures? (yes/no): ");
+        if (sc.next().equalsIgnoreCase("yes")) {
+            Metrics.reset();
+            System.out.println("✓ Metrics reset.");
+        }
+    }
+
+    // Bookings, seats, load factor and money by route, operator, type or
+    // journey date, read from the running totals in Analytics
+    void showReports() {
+        System.out.println("\n=== SALES REPORTS ===");
+        System.out.println("1. By Route");
+        System.out.println("2. By Operator");
+        System.out.println("3. By Bus Type");
+        System.out.println("4. By Journey Date");
+        System.out.print("Choose a report: ");
+        int choice = sc.nextInt();
+        if (choice < 1 || choice > Analytics.Dimension.values().length) {
+            System.out.println("\n✗ Invalid choice.");
+            return;
+        }
+        long start = System.nanoTime();
+        String report = analytics.report(Analytics.Dimension.values()[choice - 1]);
+        long micros = (System.nanoTime() - start) / 1000;
+        System.out.println();
+        System.out.print(report);
+        System.out.println("Seats offered count every departure with at least one booking. Built in " + micros + " us.");
+    }
+
+    // Loads a timetable file; rejected rows go to <file>.errors
+    void importFleet() {
+        System.out.print("\nEnter timetable file (CSV or binary): ");
+        Path file = Path.of(sc.next());
+        Path report = Path.of(file + ".errors");
+        try {
+            FleetTransfer.Result result;
+            try (Writer errors = Files.newBufferedWriter(report)) {
+                result = fleet.importBuses(file, errors);
+            }
+            System.out.println("\n✓ " + result);
+            if (result.failed == 0) {
+                Files.deleteIfExists(report);
+                return;
+            }
+            for (FleetTransfer.RowError error : result.firstErrors) System.out.println("  ✗ " + error);
+            if (result.failed > result.firstErrors.size()) System.out.println("  ...");
+            System.out.println("  Every rejected row is listed in " + report);
+        } catch (IOException e) {
+            System.out.println("\n✗ ERROR: Could not import: " + e.getMessage());
+        }
+    }
+
+    void exportFleet() {
+        System.out.print("\nEnter export file name (.csv for CSV, anything else for binary): ");
+        Path file = Path.of(sc.next());
+        try {
+            long start = System.nanoTime();
+            int count = fleet.exportBuses(file, !file.toString().toLowerCase().endsWith(".csv"));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("\n✓ Exported " + count + " buses to " + file + " in " + millis + " ms.");
+        } catch (IOException e) {
+            System.out.println("\n✗ ERROR: Could not export: " + e.getMessage());
+        }
+    }
+
     void display() {
         System.out.println("\n======================");
         System.out.println("   ADMIN DASHBOARD");
@@ -261,7 +366,13 @@ class AdminDashboard {
             System.out.println("2. View All Buses");
             System.out.println("3. Update Bus Details");
             System.out.println("4. Delete Bus");
-            System.out.println("5. Logout");
+            System.out.println("5. Export Tickets");
+            System.out.println("6. Cancel Service");
+            System.out.println("7. Performance Metrics");
+            System.out.println("8. Sales Reports");
+            System.out.println("9. Import Fleet");
+            System.out.println("10. Export Fleet");
+            System.out.println("11. Logout");
             System.out.print("Choose an option: ");
             
             try {
@@ -281,6 +392,24 @@ class AdminDashboard {
                         deleteBus();
                         break;
                     case 5:
+                        exportTickets();
+                        break;
+                    case 6:
+                        cancelService();
+                        break;
+                    case 7:
+                        showMetrics();
+                        break;
+                    case 8:
+                        showReports();
+                        break;
+                    case 9:
+                        importFleet();
+                        break;
+                    case 10:
+                        exportFleet();
+                        break;
+                    case 11:
                         System.out.println("\n✓ Logging out...");
                         exit = true;
                         break;
@@ -2,8 +2,12 @@ class AdminLogin {
     String username = "admin";
     String password = "admin123";
 
+    boolean authenticate(String user, String pass) {
+        return user != null && pass != null && user.equals(username) && pass.equals(password);
+    }
+
     void login(String user, String pass) {
-        boolean res = user.equals(username) && pass.equals(password);
+        boolean res = authenticate(user, pass);
         if(res) {
             System.out.println("Login successful.");
             AdminDashboard dashboard = new AdminDashboard();
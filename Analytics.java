@@ -0,0 +1,202 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// ============= Sales Analytics =============
+// Running totals of bookings, seats and money for every route, operator,
+// bus type and journey date, and for the whole fleet. They are updated as
+// bookings are confirmed, cancelled and refunded, so a report reads one
+// set of totals per group and never walks the bookings.
+//
+//  - A booking counts once confirmed and stored (BookingStore.add), which
+//    also covers bookings recovered from the journal or a snapshot; seats
+//    merely held, or bookings whose payment failed, never count.
+//  - Cancelling a booking takes its seats and fares back out, so seats sold
+//    and fares are those of live bookings. Refunds are totalled apart.
+//  - The groups a booking counts in are fixed when it is confirmed and
+//    kept on the booking, so editing a bus later cannot make a
+//    cancellation come off a group it was never added to.
+//  - Seats offered are the seats of every departure (bus and date) with at
+//    least one booking, added when its first booking arrives; the load
+//    factor is seats sold over seats offered.
+// Every figure is a LongAdder or DoubleAdder, so bookings on different
+// threads do not contend on the same counters.
+class Analytics {
+    enum Dimension { ROUTE, OPERATOR, TYPE, DATE }
+
+    // Totals for one group
+    static final class Totals {
+        final String label;
+        private final LongAdder bookings = new LongAdder();
+        private final LongAdder seatsSold = new LongAdder();
+        private final LongAdder seatsOffered = new LongAdder();
+        private final DoubleAdder fares = new DoubleAdder();     // paid, after discounts
+        private final DoubleAdder discounts = new DoubleAdder();
+        private final DoubleAdder refunds = new DoubleAdder();
+        private final LongAdder refundCount = new LongAdder();
+
+        Totals(String label) {
+            this.label = label;
+        }
+
+        long getBookings() { return bookings.sum(); }
+        long getSeatsSold() { return seatsSold.sum(); }
+        long getSeatsOffered() { return seatsOffered.sum(); }
+        double getFares() { return fares.sum(); }
+        double getDiscounts() { return discounts.sum(); }
+        double getGrossFares() { return fares.sum() + discounts.sum(); }
+        double getRefunds() { return refunds.sum(); }
+        long getRefundCount() { return refundCount.sum(); }
+
+        double getLoadFactor() {
+            long offered = seatsOffered.sum();
+            return offered == 0 ? 0 : (double) seatsSold.sum() / offered;
+        }
+    }
+
+    // The totals one booking counts in: its route, operator, type and date,
+    // then the fleet. The date is missing for a refund whose booking is gone.
+    static final class Groups {
+        private final Totals[] cells;
+
+        private Groups(Totals[] cells) {
+            this.cells = cells;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Totals> byRoute = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Totals> byOperator = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Totals> byType = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LocalDate, Totals> byDate = new ConcurrentHashMap<>();
+    private final Totals fleet = new Totals("All buses");
+
+    // ----- updates -----
+
+    // Counts a booking just stored. Runs under the booking's lock, as
+    // cancellations do, so it is counted before it can be taken out.
+    void booked(Booking booking) {
+        Groups groups = groupsFor(booking.getBus(), booking.getJourneyDate());
+        int seats = booking.getSeatNumbers().length;
+        for (Totals cell : groups.cells) {
+            cell.bookings.increment();
+            cell.seatsSold.add(seats);
+            cell.fares.add(booking.getFinalAmount());
+            cell.discounts.add(booking.getDiscount());
+        }
+        booking.analytics = groups;
+    }
+
+    // Takes a cancelled booking back out of the groups it was counted in.
+    // Called once, when the booking turns cancelled; it keeps its groups
+    // for its refund.
+    void cancelled(Booking booking) {
+        Groups groups = booking.analytics;
+        if (groups == null) return;
+        int seats = booking.getSeatNumbers().length;
+        for (Totals cell : groups.cells) {
+            cell.bookings.decrement();
+            cell.seatsSold.add(-seats);
+            cell.fares.add(-booking.getFinalAmount());
+            cell.discounts.add(-booking.getDiscount());
+        }
+    }
+
+    // Counts a booking again whose cancellation was undone, in the groups
+    // it was first counted in
+    void restored(Booking booking) {
+        Groups groups = booking.analytics;
+        if (groups == null) return;
+        int seats = booking.getSeatNumbers().length;
+        for (Totals cell : groups.cells) {
+            cell.bookings.increment();
+            cell.seatsSold.add(seats);
+            cell.fares.add(booking.getFinalAmount());
+            cell.discounts.add(booking.getDiscount());
+        }
+    }
+
+    // Adds the seats of a departure that has just taken its first booking
+    void departureOpened(Bus bus, LocalDate date) {
+        for (Totals cell : groupsFor(bus, date).cells) {
+            cell.seatsOffered.add(bus.getTotalSeats());
+        }
+    }
+
+    // Totals refunds against the groups their bookings were sold in. A
+    // refund whose booking was not kept (snapshots keep live bookings only)
+    // goes to its bus's current groups, or to the fleet alone if the bus is
+    // gone too.
+    void refunded(List<RefundLedger.Entry> batch, BookingStore bookings, BusRegistry registry) {
+        for (RefundLedger.Entry entry : batch) {
+            Booking booking = bookings.get(entry.bookingId);
+            Totals[] cells;
+            if (booking != null && booking.analytics != null) {
+                cells = booking.analytics.cells;
+            } else {
+                Bus bus = registry.get(entry.busId);
+                cells = bus == null ? new Totals[] {fleet} : groupsFor(bus, null).cells;
+            }
+            for (Totals cell : cells) {
+                cell.refunds.add(entry.amount);
+                cell.refundCount.increment();
+            }
+        }
+    }
+
+    private Groups groupsFor(Bus bus, LocalDate date) {
+        String from = bus.getFrom().trim();
+        String to = bus.getTo().trim();
+        String operator = bus.getOperator().trim();
+        String type = bus.getType().trim();
+        Totals route = byRoute.computeIfAbsent(RouteIndex.routeKey(from, to), k -> new Totals(from + " → " + to));
+        Totals byOp = byOperator.computeIfAbsent(RouteIndex.normalize(operator), k -> new Totals(operator));
+        Totals byTy = byType.computeIfAbsent(RouteIndex.normalize(type), k -> new Totals(type));
+        if (date == null) return new Groups(new Totals[] {route, byOp, byTy, fleet});
+        Totals day = byDate.computeIfAbsent(date, d -> new Totals(d.format(Booking.DATE_FORMAT)));
+        return new Groups(new Totals[] {route, byOp, byTy, day, fleet});
+    }
+
+    // ----- reports -----
+
+    Totals getFleet() {
+        return fleet;
+    }
+
+    // Every group of a dimension: dates in date order, the rest by name
+    List<Totals> groups(Dimension dimension) {
+        if (dimension == Dimension.DATE) {
+            List<LocalDate> dates = new ArrayList<>(byDate.keySet());
+            dates.sort(null);
+            List<Totals> totals = new ArrayList<>(dates.size());
+            for (LocalDate date : dates) totals.add(byDate.get(date));
+            return totals;
+        }
+        ConcurrentHashMap<String, Totals> map = dimension == Dimension.ROUTE ? byRoute
+                : dimension == Dimension.OPERATOR ? byOperator : byType;
+        List<Totals> totals = new ArrayList<>(map.values());
+        totals.sort(Comparator.comparing(t -> t.label, String.CASE_INSENSITIVE_ORDER));
+        return totals;
+    }
+
+    // A table for the console, one line per group and a fleet line
+    String report(Dimension dimension) {
+        StringBuilder sb = new StringBuilder();
+        String title = dimension.name().charAt(0) + dimension.name().substring(1).toLowerCase();
+        sb.append(String.format("%-30s %8s %8s %8s %6s %12s %11s %12s %11s%n", title, "Bookings", "Sold",
+                "Offered", "Load", "Gross Rs.", "Disc. Rs.", "Net Rs.", "Refund Rs."));
+        for (Totals totals : groups(dimension)) row(sb, totals);
+        row(sb, fleet);
+        return sb.toString();
+    }
+
+    private static void row(StringBuilder sb, Totals t) {
+        String label = t.label.length() > 30 ? t.label.substring(0, 29) + "…" : t.label;
+        sb.append(String.format("%-30s %8d %8d %8d %5.1f%% %12.2f %11.2f %12.2f %11.2f%n", label,
+                t.getBookings(), t.getSeatsSold(), t.getSeatsOffered(), t.getLoadFactor() * 100,
+                t.getGrossFares(), t.getDiscounts(), t.getFares(), t.getRefunds()));
+    }
+}
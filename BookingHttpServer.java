@@ -0,0 +1,509 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+// ============= HTTP API =============
+// JSON front end over FleetService and BookingService on the JDK's built-in
+// HTTP server. Every request runs on its own virtual thread, so thousands
+// of slow clients cost little more than their sockets.
+//
+//   GET    /buses[?date=]          list the fleet
+//   GET    /buses/{id}[?date=]     one bus
+//   POST   /buses                  add a bus                 (admin)
+//   PUT    /buses/{id}             update some fields        (admin)
+//   DELETE /buses/{id}             delete a bus, cancelling its bookings (admin)
+//   DELETE /buses/{id}?date=       cancel one day's service  (admin)
+//   GET    /search?from=&to=       buses on a route, in departure order;
+//                                  after=HH:mm and before=HH:mm keep a
+//                                  window of the day
+//   GET    /search?type=           buses of a type
+//                                  (both take adults=, children=, seniors=
+//                                  to add a total "quote" for that party)
+//   GET    /locations?q=[&limit=]  cities matching a partial or misspelt name
+//   GET    /journeys?from=&to=     connecting journeys; date=, after=HH:mm,
+//                                  seats=, by=earliest|cheapest
+//   POST   /bookings               book one request, or {"requests": [...]}
+//   GET    /bookings/{id}?contact=             one booking          (owner)
+//   GET    /bookings?contact=&bookingId=       bookings made with a
+//                                              contact number       (owner)
+//   GET    /bookings?busId=&date=  bookings on a bus for a journey date
+//                                  (admin; both lists take offset= and limit=)
+//   DELETE /bookings/{id}?contact=             cancel and refund    (owner)
+//   GET    /metrics                latency percentiles and counts (admin)
+//
+// Dates are ISO (yyyy-MM-dd). Admin calls use HTTP Basic auth with the
+// AdminLogin credentials. Owner calls are open to an admin, or to anyone
+// giving the contact number the booking was made with; listing a contact's
+// bookings also takes the id of one of them, so a number alone lists
+// nothing. A cancellation's refund is counted from now to departure.
+class BookingHttpServer {
+    private static final int PAGE_SIZE = 50;
+
+    private final FleetService fleet;
+    private final BookingService bookings;
+    private HttpServer server;
+
+    BookingHttpServer(FleetService fleet, BookingService bookings) {
+        this.fleet = fleet;
+        this.bookings = bookings;
+    }
+
+    void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/buses", exchange -> handle(exchange, this::buses));
+        server.createContext("/search", exchange -> handle(exchange, this::search));
+        server.createContext("/bookings", exchange -> handle(exchange, this::bookings));
+        server.createContext("/locations", exchange -> handle(exchange, this::locations));
+        server.createContext("/journeys", exchange -> handle(exchange, this::journeys));
+        server.createContext("/metrics", exchange -> handle(exchange, this::metrics));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    // ----- dispatch -----
+
+    private interface Route {
+        Response serve(HttpExchange exchange) throws Exception;
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        Response response;
+        try {
+            response = route.serve(exchange);
+        } catch (IllegalArgumentException | DateTimeParseException | ClassCastException e) {
+            response = error(400, e.getMessage());
+        } catch (InvalidBusException e) {
+            response = error(400, e.getMessage());
+        } catch (Exception e) {
+            response = error(500, "Internal error: " + e.getMessage());
+        }
+
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (response.status == 401) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"admin\"");
+        }
+        exchange.sendResponseHeaders(response.status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // ----- /buses -----
+
+    private Response buses(HttpExchange exchange) throws Exception {
+        String method = exchange.getRequestMethod();
+        Integer id = pathId(exchange, "/buses");
+        LocalDate date = dateParam(query(exchange).get("date"));
+
+        if (id == null) {
+            if (method.equals("GET")) {
+                return ok(busList(fleet.listBuses(), date));
+            }
+            if (method.equals("POST")) {
+                if (!isAdmin(exchange)) return error(401, "Admin login required");
+                Map<String, Object> body = object(exchange);
+                Bus bus = fleet.addBus(Json.integer(body, "id"), Json.string(body, "busNo"),
+                        Json.string(body, "operator"), Json.string(body, "type"), Json.string(body, "from"),
+                        Json.string(body, "to"), Json.string(body, "time"), Json.integer(body, "totalSeats"),
+                        required(body, "distanceKm"), required(body, "pricePerKm"));
+                return new Response(201, bus(new StringBuilder(), bus, date).toString());
+            }
+            return error(405, "Method not allowed");
+        }
+
+        switch (method) {
+            case "GET": {
+                Bus bus = fleet.getBus(id);
+                return bus == null ? notFound("Bus", id) : ok(bus(new StringBuilder(), bus, date));
+            }
+            case "PUT": {
+                if (!isAdmin(exchange)) return error(401, "Admin login required");
+                Map<String, Object> body = object(exchange);
+                Bus bus = fleet.updateBus(id, Json.string(body, "operator"), Json.string(body, "type"),
+                        Json.string(body, "from"), Json.string(body, "to"), Json.string(body, "time"),
+                        Json.number(body, "distanceKm"), Json.number(body, "pricePerKm"));
+                return bus == null ? notFound("Bus", id) : ok(bus(new StringBuilder(), bus, date));
+            }
+            case "DELETE": {
+                if (!isAdmin(exchange)) return error(401, "Admin login required");
+                boolean oneDay = query(exchange).containsKey("date");
+                MassCancellation.Result result = oneDay ? fleet.cancelService(id, date) : fleet.deleteBus(id);
+                if (result == null) return notFound("Bus", id);
+                StringBuilder sb = new StringBuilder("{\"").append(oneDay ? "cancelled" : "deleted").append("\":").append(id);
+                return ok(sb.append(",\"bookingsCancelled\":").append(result.bookings)
+                        .append(",\"seatsFreed\":").append(result.seats)
+                        .append(",\"refunded\":").append(result.refunded).append('}'));
+            }
+            default:
+                return error(405, "Method not allowed");
+        }
+    }
+
+    // ----- /search -----
+
+    private Response search(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("GET")) return error(405, "Method not allowed");
+        Map<String, String> query = query(exchange);
+        LocalDate date = dateParam(query.get("date"));
+        List<Bus> found;
+        if (query.containsKey("type")) {
+            found = bookings.searchType(query.get("type"));
+        } else if (query.containsKey("from") && query.containsKey("to")
+                && (query.containsKey("after") || query.containsKey("before"))) {
+            int earliest = query.containsKey("after") ? JourneyPlanner.departure(query.get("after")) : 0;
+            int latest = query.containsKey("before") ? JourneyPlanner.departure(query.get("before")) : RouteIndex.DAY_MINUTES - 1;
+            if (earliest < 0 || latest < 0) throw new IllegalArgumentException("after and before must be HH:mm");
+            found = bookings.searchDepartures(query.get("from"), query.get("to"), earliest, latest);
+        } else if (query.containsKey("from") && query.containsKey("to")) {
+            found = bookings.searchRoute(query.get("from"), query.get("to"));
+        } else {
+            return error(400, "Give either from and to, or type");
+        }
+        double[] quotes = null;
+        if (query.containsKey("adults") || query.containsKey("children") || query.containsKey("seniors")) {
+            int[] mix = new int[FareCategory.ALL.length];
+            mix[FareCategory.ADULT.ordinal()] = intParam(query, "adults");
+            mix[FareCategory.CHILD.ordinal()] = intParam(query, "children");
+            mix[FareCategory.SENIOR.ordinal()] = intParam(query, "seniors");
+            quotes = bookings.quote(found, new int[][] {mix});
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < found.size(); i++) {
+            if (i > 0) sb.append(',');
+            bus(sb, found.get(i), date, quotes == null ? Double.NaN : quotes[i]);
+        }
+        return ok(sb.append(']'));
+    }
+
+    // ----- /locations -----
+
+    private Response locations(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("GET")) return error(405, "Method not allowed");
+        Map<String, String> query = query(exchange);
+        if (!query.containsKey("q")) return error(400, "Give q");
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10;
+        StringBuilder sb = new StringBuilder("[");
+        for (String name : bookings.suggestLocations(query.get("q"), limit)) {
+            if (sb.length() > 1) sb.append(',');
+            Json.quote(sb, name);
+        }
+        return ok(sb.append(']'));
+    }
+
+    // ----- /journeys -----
+
+    private Response journeys(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("GET")) return error(405, "Method not allowed");
+        Map<String, String> query = query(exchange);
+        String from = query.get("from"), to = query.get("to");
+        if (from == null || to == null) return error(400, "Give from and to");
+        LocalDate date = dateParam(query.get("date"));
+        int after = query.containsKey("after") ? JourneyPlanner.departure(query.get("after")) : 0;
+        if (after < 0) throw new IllegalArgumentException("after must be HH:mm");
+        int seats = query.containsKey("seats") ? Integer.parseInt(query.get("seats")) : 1;
+        String by = query.getOrDefault("by", "earliest");
+        JourneyPlanner.Journey journey;
+        if (by.equals("earliest")) {
+            journey = bookings.planEarliest(from, to, date, after, seats);
+        } else if (by.equals("cheapest")) {
+            journey = bookings.planCheapest(from, to, date, after, seats);
+        } else {
+            return error(400, "by must be earliest or cheapest");
+        }
+        if (journey == null) return error(404, "No journey found");
+
+        StringBuilder sb = new StringBuilder("{\"fare\":").append(journey.fare)
+                .append(",\"transfers\":").append(journey.getTransfers()).append(",\"legs\":[");
+        for (int i = 0; i < journey.legs.size(); i++) {
+            JourneyPlanner.Leg leg = journey.legs.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"busId\":").append(leg.bus.getId());
+            Json.quote(sb.append(",\"from\":"), leg.bus.getFrom());
+            Json.quote(sb.append(",\"to\":"), leg.bus.getTo());
+            Json.quote(sb.append(",\"date\":"), leg.date.toString());
+            Json.quote(sb.append(",\"departs\":"), JourneyPlanner.clock(leg.departs));
+            Json.quote(sb.append(",\"arrives\":"), JourneyPlanner.clock(leg.arrives));
+            sb.append('}');
+        }
+        return ok(sb.append("]}"));
+    }
+
+    // ----- /metrics -----
+
+    private Response metrics(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("GET")) return error(405, "Method not allowed");
+        if (!isAdmin(exchange)) return error(401, "Admin login required");
+        return ok(Metrics.toJson(new StringBuilder()));
+    }
+
+    // ----- /bookings -----
+
+    private Response bookings(HttpExchange exchange) throws Exception {
+        String method = exchange.getRequestMethod();
+        Integer id = pathId(exchange, "/bookings");
+        Map<String, String> query = query(exchange);
+
+        if (id == null) {
+            if (method.equals("GET")) {
+                int offset = query.containsKey("offset") ? Integer.parseInt(query.get("offset")) : 0;
+                int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : PAGE_SIZE;
+                List<Booking> page;
+                if (query.containsKey("contact")) {
+                    if (!isAdmin(exchange)) {
+                        String known = query.get("bookingId");
+                        if (known == null) return error(401, "Give bookingId of one of the contact's bookings, or log in as admin");
+                        Booking proof = bookings.findBooking(Integer.parseInt(known));
+                        if (proof == null || !proof.getContact().equals(query.get("contact"))) {
+                            return error(404, "No booking " + known + " made with that contact number");
+                        }
+                    }
+                    page = bookings.findByContact(query.get("contact"), offset, limit);
+                } else if (query.containsKey("busId") && query.containsKey("date")) {
+                    if (!isAdmin(exchange)) return error(401, "Admin login required");
+                    page = bookings.findByBusDate(Integer.parseInt(query.get("busId")),
+                            LocalDate.parse(query.get("date")), offset, limit);
+                } else {
+                    return error(400, "Give a contact number, or busId and date");
+                }
+                StringBuilder sb = new StringBuilder("[");
+                for (Booking booking : page) {
+                    if (sb.length() > 1) sb.append(',');
+                    booking(sb, booking);
+                }
+                return ok(sb.append(']'));
+            }
+            if (method.equals("POST")) {
+                Map<String, Object> body = object(exchange);
+                if (body.containsKey("requests")) {
+                    List<BookingRequest> batch = new ArrayList<>();
+                    for (Object item : (List<?>) body.get("requests")) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> request = (Map<String, Object>) item;
+                        batch.add(bookingRequest(request));
+                    }
+                    StringBuilder sb = new StringBuilder("[");
+                    for (BookingResult result : bookings.bookBatch(batch)) {
+                        if (sb.length() > 1) sb.append(',');
+                        result(sb, result);
+                    }
+                    return ok(sb.append(']'));
+                }
+                BookingResult result = bookings.book(bookingRequest(body));
+                return new Response(result.isConfirmed() ? 201 : 409, result(new StringBuilder(), result).toString());
+            }
+            return error(405, "Method not allowed");
+        }
+
+        if (!method.equals("GET") && !method.equals("DELETE")) return error(405, "Method not allowed");
+        boolean admin = isAdmin(exchange);
+        if (!admin && !query.containsKey("contact")) {
+            return error(401, "Give the booking's contact number, or log in as admin");
+        }
+        // A wrong contact number gets the same answer as a missing booking
+        Booking booking = bookings.findBooking(id);
+        if (booking == null || !admin && !booking.getContact().equals(query.get("contact"))) {
+            return notFound("Booking", id);
+        }
+        if (method.equals("GET")) {
+            return ok(booking(new StringBuilder(), booking));
+        }
+        int hours = MassCancellation.hoursUntilDeparture(booking.getBus(), booking.getJourneyDate());
+        Double refund = bookings.cancelBooking(id, hours);
+        if (refund == null) return error(409, "Booking " + id + " is already cancelled.");
+        return ok(new StringBuilder("{\"bookingId\":").append(id).append(",\"refund\":").append(refund).append('}'));
+    }
+
+    private static BookingRequest bookingRequest(Map<String, Object> body) {
+        String name = Json.string(body, "passengerName");
+        String gender = Json.string(body, "gender");
+        int age = Json.integer(body, "age");
+        String contact = Json.string(body, "contact");
+        int busId = Json.integer(body, "busId");
+        String journeyDate = Json.string(body, "journeyDate");
+        if (journeyDate == null) throw new IllegalArgumentException("Field 'journeyDate' is required");
+        LocalDate date = LocalDate.parse(journeyDate);
+        String paymentMethod = Json.string(body, "paymentMethod");
+        int[] seats = Json.integers(body, "seats");
+        if (seats != null) {
+            return new BookingRequest(name, gender, age, contact, busId, seats, date, paymentMethod);
+        }
+        return new BookingRequest(name, gender, age, contact, busId, Json.integer(body, "seatCount"), date, paymentMethod);
+    }
+
+    // ----- JSON rendering -----
+
+    private static StringBuilder busList(Bus[] buses, LocalDate date) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < buses.length; i++) {
+            if (i > 0) sb.append(',');
+            bus(sb, buses[i], date);
+        }
+        return sb.append(']');
+    }
+
+    private static StringBuilder bus(StringBuilder sb, Bus bus, LocalDate date) {
+        return bus(sb, bus, date, Double.NaN);
+    }
+
+    // 'quote' is the total for the searched party, or NaN if none was given
+    private static StringBuilder bus(StringBuilder sb, Bus bus, LocalDate date, double quote) {
+        sb.append("{\"id\":").append(bus.getId());
+        Json.quote(sb.append(",\"busNo\":"), bus.getBusNo());
+        Json.quote(sb.append(",\"operator\":"), bus.getOperator());
+        Json.quote(sb.append(",\"type\":"), bus.getType());
+        Json.quote(sb.append(",\"from\":"), bus.getFrom());
+        Json.quote(sb.append(",\"to\":"), bus.getTo());
+        Json.quote(sb.append(",\"time\":"), bus.getTime());
+        sb.append(",\"totalSeats\":").append(bus.getTotalSeats());
+        Json.quote(sb.append(",\"date\":"), date.toString());
+        sb.append(",\"availableSeats\":").append(bus.getAvailableSeats(date));
+        sb.append(",\"distanceKm\":").append(bus.getDistanceKm());
+        sb.append(",\"pricePerKm\":").append(bus.getPricePerKm());
+        FareEngine.FareTable fares = FareEngine.table(bus);
+        sb.append(",\"baseFare\":").append(fares.baseFare);
+        sb.append(",\"fares\":{");
+        for (FareCategory category : FareCategory.ALL) {
+            if (category.ordinal() > 0) sb.append(',');
+            Json.quote(sb, category.name()).append(':').append(fares.perSeat(category));
+        }
+        sb.append('}');
+        if (!Double.isNaN(quote)) sb.append(",\"quote\":").append(quote);
+        return sb.append('}');
+    }
+
+    private static StringBuilder booking(StringBuilder sb, Booking booking) {
+        sb.append("{\"bookingId\":").append(booking.getBookingId());
+        Json.quote(sb.append(",\"status\":"), booking.isCancelled() ? "CANCELLED" : "CONFIRMED");
+        Json.quote(sb.append(",\"passengerName\":"), booking.getPassengerName());
+        Json.quote(sb.append(",\"gender\":"), booking.getGender());
+        sb.append(",\"age\":").append(booking.getAge());
+        Json.quote(sb.append(",\"contact\":"), booking.getContact());
+        sb.append(",\"busId\":").append(booking.getBus().getId());
+        sb.append(",\"seats\":[");
+        int[] seats = booking.getSeatNumbers();
+        for (int i = 0; i < seats.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(seats[i]);
+        }
+        sb.append(']');
+        Json.quote(sb.append(",\"journeyDate\":"), booking.getJourneyDate().toString());
+        Json.quote(sb.append(",\"bookingDate\":"), booking.getBookingDate());
+        Json.quote(sb.append(",\"paymentMethod\":"), booking.getPaymentMethod());
+        sb.append(",\"discount\":").append(booking.getDiscount());
+        sb.append(",\"finalAmount\":").append(booking.getFinalAmount());
+        return sb.append('}');
+    }
+
+    private static StringBuilder result(StringBuilder sb, BookingResult result) {
+        Json.quote(sb.append("{\"status\":"), result.status.name());
+        Json.quote(sb.append(",\"message\":"), result.message);
+        if (result.booking != null) booking(sb.append(",\"booking\":"), result.booking);
+        return sb.append('}');
+    }
+
+    // ----- helpers -----
+
+    private static Response ok(StringBuilder body) {
+        return new Response(200, body.toString());
+    }
+
+    private static Response notFound(String what, int id) {
+        return error(404, what + " with ID " + id + " not found!");
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, Json.quote(new StringBuilder("{\"error\":"), message).append('}').toString());
+    }
+
+    private static boolean isAdmin(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Basic ")) return false;
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        int colon = decoded.indexOf(':');
+        return colon > 0 && new AdminLogin().authenticate(decoded.substring(0, colon), decoded.substring(colon + 1));
+    }
+
+    // The numeric id after the context path, or null for the collection itself
+    private static Integer pathId(HttpExchange exchange, String context) {
+        String path = exchange.getRequestURI().getPath();
+        String rest = path.length() > context.length() ? path.substring(context.length() + 1) : "";
+        if (rest.isEmpty()) return null;
+        try {
+            return Integer.valueOf(rest);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid id: " + rest);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String key) {
+        String value = query.get(key);
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+
+    private static LocalDate dateParam(String value) {
+        return value == null ? LocalDate.now() : LocalDate.parse(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(HttpExchange exchange) throws IOException {
+        String text;
+        try (InputStream in = exchange.getRequestBody()) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Object parsed = Json.parse(text);
+        if (!(parsed instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) parsed;
+    }
+
+    private static double required(Map<String, Object> body, String key) {
+        Double value = Json.number(body, key);
+        if (value == null) throw new IllegalArgumentException("Field '" + key + "' is required");
+        return value;
+    }
+}
@@ -0,0 +1,669 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// ============= Booking Journal =============
+// Append-only binary log of every state change. Records are framed as
+// [int length][int crc32][byte type][payload] so a torn write at the tail
+// is detected and cut off during recovery. Changes that must recover
+// together (a booking and its seats, say) go in one UNIT record holding
+// the others, so a torn tail keeps all of them or none.
+//
+// One writer thread drains whatever records are queued, writes them with a
+// single gathering write and forces them with a single fsync (group commit).
+// Concurrent bookers therefore share fsyncs instead of paying one each.
+//
+// The log is split into numbered segments. Taking a snapshot rolls to a new
+// segment, and segments older than the newest snapshot are deleted.
+class BookingJournal {
+    enum Durability {
+        SYNC,   // caller waits until its record is fsynced
+        ASYNC,  // caller returns at once; the writer fsyncs every batch
+        NONE    // records are written but never forced; the OS flushes them
+    }
+
+    static final byte BUS_ADD = 1;
+    static final byte BUS_UPDATE = 2;
+    static final byte BUS_DELETE = 3;
+    static final byte SEAT_BOOK = 4;
+    static final byte SEAT_CANCEL = 5;
+    static final byte BOOKING_CREATE = 6;
+    static final byte BOOKING_CANCEL = 7;
+    static final byte ID_LEASE = 8;
+    static final byte BOOKINGS_CANCEL = 9;
+    static final byte REFUNDS = 10;
+    static final byte UNIT = 11; // [int count] then per record [int length][byte type][payload]
+    static final byte DEPARTURE_CANCEL = 12;
+
+    private static final int MAX_BATCH = 1024;
+
+    private final Path dir;
+    private final Durability durability;
+    private FileChannel channel;
+    private volatile long segment;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private Thread writer;
+    private volatile boolean closed = false;
+    private long writtenEnd;              // end of the last complete write; writer thread only
+    private volatile IOException failure; // set when a failed write could not be cut off
+
+    private static final int RECORDS = 0;
+    private static final int ROLL = 1;
+    private static final int CLOSE = 2;
+
+    private static class Pending {
+        final int kind;
+        final ByteBuffer[] records;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(int kind, ByteBuffer[] records) {
+            this.kind = kind;
+            this.records = records;
+        }
+    }
+
+    private BookingJournal(Path dir, Durability durability) {
+        this.dir = dir;
+        this.durability = durability;
+    }
+
+    // A journal that records nothing, used when persistence is off
+    static BookingJournal disabled() {
+        return new BookingJournal(null, Durability.NONE);
+    }
+
+    // The journal is a sequence of segment files journal-<n>.log; a new
+    // segment starts whenever a snapshot is taken
+    static BookingJournal open(Path dir, Durability durability) throws IOException {
+        Files.createDirectories(dir);
+        return new BookingJournal(dir, durability);
+    }
+
+    boolean isEnabled() {
+        return dir != null;
+    }
+
+    long currentSegment() {
+        return segment;
+    }
+
+    static Path segmentPath(Path dir, long seq) {
+        return dir.resolve(String.format("journal-%016d.log", seq));
+    }
+
+    static List<Long> listSegments(Path dir) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(f -> {
+                String name = f.getFileName().toString();
+                if (name.startsWith("journal-") && name.endsWith(".log")) {
+                    segments.add(Long.parseLong(name.substring(8, name.length() - 4)));
+                }
+            });
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    // ----- recovery -----
+
+    // Rebuilds the fleet, seat inventory, bookings and refund ledger from
+    // every segment numbered fromSegment or later, then opens the newest
+    // one for appending. Returns the number of records applied.
+    int replay(BusRegistry registry, BookingStore bookings, RefundLedger refunds,
+               long fromSegment) throws IOException {
+        if (!isEnabled()) return 0;
+
+        List<Long> segments = listSegments(dir);
+        segments.removeIf(seq -> seq < fromSegment);
+        long last = segments.isEmpty() ? Math.max(fromSegment, 1) : segments.get(segments.size() - 1);
+
+        int[] applied = {0};
+        long validEnd = 0;
+        for (long seq : segments) {
+            validEnd = replaySegment(segmentPath(dir, seq), registry, bookings, refunds, applied);
+            if (seq != last && validEnd < Files.size(segmentPath(dir, seq))) {
+                System.out.println("✗ Journal segment " + seq + " is damaged; later records were skipped.");
+            }
+        }
+
+        segment = last;
+        channel = FileChannel.open(segmentPath(dir, last), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drop a torn tail left by a crash mid-write
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        writtenEnd = validEnd;
+        startWriter();
+        return applied[0];
+    }
+
+    // Applies every intact record of one segment; returns where they end
+    private long replaySegment(Path file, BusRegistry registry, BookingStore bookings,
+                               RefundLedger refunds, int[] applied) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size == 0) return 0;
+
+            MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            while (buf.remaining() >= 8) {
+                int start = buf.position();
+                int length = buf.getInt();
+                int checksum = buf.getInt();
+                if (length <= 0 || length > buf.remaining()) {
+                    buf.position(start);
+                    break;
+                }
+
+                ByteBuffer body = buf.slice(buf.position(), length);
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    buf.position(start);
+                    break;
+                }
+                apply(body, registry, bookings, refunds);
+                applied[0]++;
+                buf.position(buf.position() + length);
+            }
+            return buf.position();
+        }
+    }
+
+    // Removes segments fully covered by a snapshot
+    void deleteSegmentsBefore(long seq) throws IOException {
+        if (!isEnabled()) return;
+        for (long old : listSegments(dir)) {
+            if (old < seq) Files.deleteIfExists(segmentPath(dir, old));
+        }
+    }
+
+    private void apply(ByteBuffer body, BusRegistry registry, BookingStore bookings, RefundLedger refunds) {
+        byte type = body.get();
+        switch (type) {
+            case BUS_ADD:
+            case BUS_UPDATE: {
+                int id = body.getInt();
+                String busNo = getString(body);
+                String operator = getString(body);
+                String busType = getString(body);
+                String from = getString(body);
+                String to = getString(body);
+                String time = getString(body);
+                int seats = body.getInt();
+                double distanceKm = body.getDouble();
+                double pricePerKm = body.getDouble();
+
+                Bus existing = registry.get(id);
+                if (existing == null) {
+                    try {
+                        registry.add(new Bus(id, busNo, operator, busType, from, to, time, seats, distanceKm, pricePerKm));
+                    } catch (InvalidBusException e) {
+                        // cannot happen: the id was just checked
+                    }
+                } else {
+                    String oldFrom = existing.getFrom();
+                    String oldTo = existing.getTo();
+                    String oldType = existing.getType();
+                    existing.setOperator(operator);
+                    existing.setType(busType);
+                    existing.setFrom(from);
+                    existing.setTo(to);
+                    existing.setTime(time);
+                    existing.setDistanceKm(distanceKm);
+                    existing.setPricePerKm(pricePerKm);
+                    registry.reindex(existing, oldFrom, oldTo, oldType);
+                }
+                break;
+            }
+            case BUS_DELETE:
+                registry.remove(body.getInt());
+                break;
+            case SEAT_BOOK:
+            case SEAT_CANCEL: {
+                Bus bus = registry.get(body.getInt());
+                LocalDate date = LocalDate.ofEpochDay(body.getLong());
+                int[] seats = getInts(body);
+                if (bus == null) break;
+                if (type == SEAT_BOOK) {
+                    bus.restoreSeats(date, seats);
+                } else {
+                    for (int seat : seats) bus.cancelSeat(date, seat);
+                }
+                break;
+            }
+            case BOOKING_CREATE: {
+                int bookingId = body.getInt();
+                Bus bus = registry.get(body.getInt());
+                String name = getString(body);
+                String gender = getString(body);
+                int age = body.getInt();
+                String contact = getString(body);
+                int[] seats = getInts(body);
+                LocalDate journeyDate = LocalDate.ofEpochDay(body.getLong());
+                String bookingDate = getString(body);
+                String paymentMethod = getString(body);
+                double discount = body.getDouble();
+                double finalAmount = body.getDouble();
+                if (bus == null) break;
+                bookings.add(new Booking(bookingId, name, gender, age, contact, bus, seats,
+                        journeyDate, bookingDate, paymentMethod, discount, finalAmount));
+                break;
+            }
+            case BOOKING_CANCEL: {
+                Booking booking = bookings.get(body.getInt());
+                if (booking != null) booking.markCancelled();
+                break;
+            }
+            case ID_LEASE:
+                bookings.skipPast(body.getInt());
+                break;
+            case DEPARTURE_CANCEL: {
+                Bus bus = registry.get(body.getInt());
+                LocalDate date = LocalDate.ofEpochDay(body.getLong());
+                if (bus != null) bus.cancelDeparture(date);
+                break;
+            }
+            case BOOKINGS_CANCEL:
+                for (int bookingId : getInts(body)) {
+                    Booking booking = bookings.get(bookingId);
+                    if (booking != null) booking.markCancelled();
+                }
+                break;
+            case UNIT: {
+                int count = body.getInt();
+                for (int i = 0; i < count; i++) {
+                    int length = body.getInt();
+                    apply(body.slice(body.position(), length), registry, bookings, refunds);
+                    body.position(body.position() + length);
+                }
+                break;
+            }
+            case REFUNDS: {
+                int count = body.getInt();
+                List<RefundLedger.Entry> batch = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    batch.add(new RefundLedger.Entry(body.getInt(), body.getInt(), body.getDouble(),
+                            body.getLong(), RefundLedger.Reason.ALL[body.get()]));
+                }
+                refunds.add(batch);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    // ----- logging -----
+
+    void logBusAdd(Bus bus) {
+        append(encodeBus(BUS_ADD, bus));
+    }
+
+    // Logs many new buses as one unit, sharing a single write and fsync
+    void logBusAdds(List<Bus> buses) {
+        if (!isEnabled() || buses.isEmpty()) return;
+        ByteBuffer[] records = new ByteBuffer[buses.size()];
+        for (int i = 0; i < records.length; i++) records[i] = encodeBus(BUS_ADD, buses.get(i));
+        append(unit(records));
+    }
+
+    void logBusUpdate(Bus bus) {
+        append(encodeBus(BUS_UPDATE, bus));
+    }
+
+    void logBusDelete(int busId) {
+        if (!isEnabled()) return;
+        ByteBuffer buf = ByteBuffer.allocate(9 + 4);
+        begin(buf, BUS_DELETE).putInt(busId);
+        append(seal(buf));
+    }
+
+    // Logs that a bus's service on a date is cancelled for good
+    void logDepartureCancel(Bus bus, LocalDate date) {
+        if (!isEnabled()) return;
+        ByteBuffer buf = ByteBuffer.allocate(9 + 12);
+        begin(buf, DEPARTURE_CANCEL).putInt(bus.getId()).putLong(date.toEpochDay());
+        append(seal(buf));
+    }
+
+    void logSeatBook(Bus bus, LocalDate date, int[] seats) {
+        append(encodeSeats(SEAT_BOOK, bus, date, seats));
+    }
+
+    void logSeatCancel(Bus bus, LocalDate date, int[] seats) {
+        append(encodeSeats(SEAT_CANCEL, bus, date, seats));
+    }
+
+    // Logs the seats taken and the booking itself as one group-committed unit
+    void logBookingCreate(Booking booking) {
+        if (!isEnabled()) return;
+        append(unit(encodeBooking(booking)));
+    }
+
+    // Logs many bookings as one unit, sharing a single write and fsync
+    void logBookings(List<Booking> bookings) {
+        if (!isEnabled() || bookings.isEmpty()) return;
+        ByteBuffer[] records = new ByteBuffer[bookings.size() * 2];
+        for (int i = 0; i < bookings.size(); i++) {
+            ByteBuffer[] pair = encodeBooking(bookings.get(i));
+            records[2 * i] = pair[0];
+            records[2 * i + 1] = pair[1];
+        }
+        append(unit(records));
+    }
+
+    private ByteBuffer[] encodeBooking(Booking booking) {
+        ByteBuffer seats = encodeSeats(SEAT_BOOK, booking.getBus(), booking.getJourneyDate(), booking.getSeatNumbers());
+
+        byte[] name = utf8(booking.getPassengerName());
+        byte[] gender = utf8(booking.getGender());
+        byte[] contact = utf8(booking.getContact());
+        byte[] bookingDate = utf8(booking.getBookingDate());
+        byte[] method = utf8(booking.getPaymentMethod());
+        int size = 9 + 4 + 4 + 2 + name.length + 2 + gender.length + 4 + 2 + contact.length
+                + 4 + 4 * booking.getSeatNumbers().length + 8 + 2 + bookingDate.length
+                + 2 + method.length + 8 + 8;
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        begin(buf, BOOKING_CREATE);
+        buf.putInt(booking.getBookingId()).putInt(booking.getBus().getId());
+        putString(buf, name);
+        putString(buf, gender);
+        buf.putInt(booking.getAge());
+        putString(buf, contact);
+        putInts(buf, booking.getSeatNumbers());
+        buf.putLong(booking.getJourneyDate().toEpochDay());
+        putString(buf, bookingDate);
+        putString(buf, method);
+        buf.putDouble(booking.getDiscount()).putDouble(booking.getFinalAmount());
+
+        return new ByteBuffer[] {seats, seal(buf)};
+    }
+
+    // Logs the cancellation, the seats it frees and its refunds as one unit
+    void logBookingCancel(Booking booking, List<RefundLedger.Entry> refunds) {
+        if (!isEnabled()) return;
+        ByteBuffer buf = ByteBuffer.allocate(9 + 4);
+        begin(buf, BOOKING_CANCEL).putInt(booking.getBookingId());
+        ByteBuffer seats = encodeSeats(SEAT_CANCEL, booking.getBus(), booking.getJourneyDate(), booking.getSeatNumbers());
+        append(refunds.isEmpty() ? unit(seal(buf), seats) : unit(seal(buf), seats, encodeRefunds(refunds)));
+    }
+
+    // Logs a batch of refund ledger entries
+    void logRefunds(List<RefundLedger.Entry> refunds) {
+        if (!isEnabled() || refunds.isEmpty()) return;
+        append(encodeRefunds(refunds));
+    }
+
+    // Logs a chunk of a mass cancellation as one unit: the bookings
+    // cancelled, every seat they free on the date, and their refunds
+    void logMassCancel(Bus bus, LocalDate date, List<Booking> cancelled, int[] seats,
+                       List<RefundLedger.Entry> refunds) {
+        if (!isEnabled()) return;
+        ByteBuffer buf = ByteBuffer.allocate(9 + 4 + 4 * cancelled.size());
+        begin(buf, BOOKINGS_CANCEL).putInt(cancelled.size());
+        for (Booking booking : cancelled) buf.putInt(booking.getBookingId());
+        append(unit(seal(buf), encodeSeats(SEAT_CANCEL, bus, date, seats), encodeRefunds(refunds)));
+    }
+
+    private static ByteBuffer encodeRefunds(List<RefundLedger.Entry> refunds) {
+        ByteBuffer buf = ByteBuffer.allocate(9 + 4 + 25 * refunds.size());
+        begin(buf, REFUNDS).putInt(refunds.size());
+        for (RefundLedger.Entry entry : refunds) {
+            buf.putInt(entry.bookingId).putInt(entry.busId).putDouble(entry.amount)
+                    .putLong(entry.time).put((byte) entry.reason.ordinal());
+        }
+        return seal(buf);
+    }
+
+    // Reserves booking ids up to 'lastId'; see BookingStore
+    void logIdLease(int lastId) {
+        if (!isEnabled()) return;
+        ByteBuffer buf = ByteBuffer.allocate(9 + 4);
+        begin(buf, ID_LEASE).putInt(lastId);
+        append(seal(buf));
+    }
+
+    private void append(ByteBuffer... records) {
+        if (!isEnabled() || records[0] == null) return;
+        if (closed) throw new IllegalStateException("Journal is closed");
+
+        Pending pending = new Pending(RECORDS, records);
+        submit(pending);
+        if (durability == Durability.SYNC) {
+            pending.done.join();
+        }
+    }
+
+    // Hands work to the writer; fails it at once if the writer has stopped
+    private void submit(Pending pending) {
+        queue.add(pending);
+        if (failure != null) pending.done.completeExceptionally(failure);
+    }
+
+    // Finishes the current segment and starts the next one. Every record
+    // queued before the call lands in the old segment. Returns the number of
+    // the new segment.
+    long roll() {
+        Pending pending = new Pending(ROLL, null);
+        submit(pending);
+        pending.done.join();
+        return segment;
+    }
+
+    // ----- group commit writer -----
+
+    private void startWriter() {
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        List<Pending> written = new ArrayList<>();
+        List<ByteBuffer> buffers = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                for (Pending p : batch) {
+                    if (p.kind == RECORDS) {
+                        for (ByteBuffer b : p.records) buffers.add(b);
+                        written.add(p);
+                        continue;
+                    }
+                    flush(buffers, written);
+                    if (p.kind == ROLL) {
+                        channel.force(true);
+                        channel.close();
+                        long next = segment + 1;
+                        channel = FileChannel.open(segmentPath(dir, next),
+                                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                        segment = next;
+                        writtenEnd = 0;
+                        p.done.complete(null);
+                    } else {
+                        channel.force(true);
+                        channel.close();
+                        p.done.complete(null);
+                        return;
+                    }
+                }
+                flush(buffers, written);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                for (Pending p : batch) p.done.completeExceptionally(e);
+                System.out.println("✗ Journal write failed: " + e.getMessage());
+                if (!cutBack()) return;
+            } finally {
+                batch.clear();
+                written.clear();
+                buffers.clear();
+            }
+        }
+    }
+
+    // Writes the gathered records with one call and forces them with one fsync
+    private void flush(List<ByteBuffer> buffers, List<Pending> written) throws IOException {
+        if (written.isEmpty()) return;
+        ByteBuffer[] gathered = buffers.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer b : gathered) remaining += b.remaining();
+        while (remaining > 0) {
+            remaining -= channel.write(gathered);
+        }
+        if (durability != Durability.NONE) {
+            channel.force(false);
+        }
+        writtenEnd = channel.position();
+        for (Pending p : written) p.done.complete(null);
+        buffers.clear();
+        written.clear();
+    }
+
+    // Cuts a failed write back to the last complete one, so later records
+    // never follow a partial record. If even that fails, the journal stops
+    // and every write from then on fails. Returns whether writing can go on.
+    private boolean cutBack() {
+        try {
+            channel.truncate(writtenEnd);
+            channel.position(writtenEnd);
+            return true;
+        } catch (IOException e) {
+            failure = e;
+            System.out.println("✗ Journal stopped: " + e.getMessage());
+            List<Pending> left = new ArrayList<>();
+            queue.drainTo(left);
+            for (Pending p : left) p.done.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    // Flushes everything queued so far, then stops the writer
+    void close() {
+        if (!isEnabled() || closed || writer == null) return;
+        closed = true;
+        Pending pending = new Pending(CLOSE, null);
+        submit(pending);
+        try {
+            pending.done.join();
+        } catch (RuntimeException e) {
+            System.out.println("✗ Journal close failed: " + e.getMessage());
+        }
+    }
+
+    // ----- encoding -----
+
+    private ByteBuffer encodeBus(byte type, Bus bus) {
+        if (!isEnabled()) return null;
+        byte[] busNo = utf8(bus.getBusNo());
+        byte[] operator = utf8(bus.getOperator());
+        byte[] busType = utf8(bus.getType());
+        byte[] from = utf8(bus.getFrom());
+        byte[] to = utf8(bus.getTo());
+        byte[] time = utf8(bus.getTime());
+        int size = 9 + 4 + 2 * 6 + busNo.length + operator.length + busType.length
+                + from.length + to.length + time.length + 4 + 8 + 8;
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        begin(buf, type).putInt(bus.getId());
+        putString(buf, busNo);
+        putString(buf, operator);
+        putString(buf, busType);
+        putString(buf, from);
+        putString(buf, to);
+        putString(buf, time);
+        buf.putInt(bus.getTotalSeats()).putDouble(bus.getDistanceKm()).putDouble(bus.getPricePerKm());
+        return seal(buf);
+    }
+
+    private ByteBuffer encodeSeats(byte type, Bus bus, LocalDate date, int[] seats) {
+        if (!isEnabled()) return null;
+        ByteBuffer buf = ByteBuffer.allocate(9 + 4 + 8 + 4 + 4 * seats.length);
+        begin(buf, type).putInt(bus.getId()).putLong(date.toEpochDay());
+        putInts(buf, seats);
+        return seal(buf);
+    }
+
+    // Frames sealed records as one UNIT record; each keeps its length and
+    // body, and the unit's checksum covers them all
+    private static ByteBuffer unit(ByteBuffer... records) {
+        if (records[0] == null) return null;
+        int size = 9 + 4;
+        for (ByteBuffer r : records) size += r.remaining() - 4;
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        begin(buf, UNIT).putInt(records.length);
+        for (ByteBuffer r : records) {
+            buf.putInt(r.getInt(0)).put(r.array(), 8, r.remaining() - 8);
+        }
+        return seal(buf);
+    }
+
+    // Leaves room for the length and checksum, then writes the type
+    private static ByteBuffer begin(ByteBuffer buf, byte type) {
+        buf.position(8);
+        return buf.put(type);
+    }
+
+    // Fills in the length and checksum and readies the buffer for writing
+    private static ByteBuffer seal(ByteBuffer buf) {
+        int length = buf.position() - 8;
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 8, length);
+        buf.putInt(0, length).putInt(4, (int) crc.getValue());
+        buf.flip();
+        return buf;
+    }
+
+    // Strings are stored with an unsigned 16-bit length; longer values are
+    // refused where they enter (BookingService, FleetService, FleetTransfer)
+    static final int MAX_STRING_BYTES = 0xFFFF;
+
+    static boolean fits(String value) {
+        return value == null || value.length() <= MAX_STRING_BYTES / 3 || utf8(value).length <= MAX_STRING_BYTES;
+    }
+
+    static byte[] utf8(String value) {
+        return (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void putString(ByteBuffer buf, byte[] bytes) {
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long to store");
+        }
+        buf.putShort((short) bytes.length).put(bytes);
+    }
+
+    static String getString(ByteBuffer buf) {
+        int length = buf.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void putInts(ByteBuffer buf, int[] values) {
+        buf.putInt(values.length);
+        for (int v : values) buf.putInt(v);
+    }
+
+    static int[] getInts(ByteBuffer buf) {
+        int[] values = new int[buf.getInt()];
+        for (int i = 0; i < values.length; i++) values[i] = buf.getInt();
+        return values;
+    }
+}
@@ -0,0 +1,560 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// ============= Batch Booking Request =============
+// One booking in a batch: either explicit seat numbers or a seat count,
+// in which case seats are assigned together (see SeatMap.findGroup).
+class BookingRequest {
+    String passengerName;
+    String gender;
+    int age;
+    String contact;
+    int busId;
+    int[] seatNumbers;   // null when seatCount is used
+    int seatCount;
+    LocalDate journeyDate;
+    String paymentMethod;
+
+    BookingRequest(String passengerName, String gender, int age, String contact, int busId,
+                   int[] seatNumbers, LocalDate journeyDate, String paymentMethod) {
+        this.passengerName = passengerName;
+        this.gender = gender;
+        this.age = age;
+        this.contact = contact;
+        this.busId = busId;
+        this.seatNumbers = seatNumbers;
+        this.seatCount = seatNumbers.length;
+        this.journeyDate = journeyDate;
+        this.paymentMethod = paymentMethod;
+    }
+
+    BookingRequest(String passengerName, String gender, int age, String contact, int busId,
+                   int seatCount, LocalDate journeyDate, String paymentMethod) {
+        this.passengerName = passengerName;
+        this.gender = gender;
+        this.age = age;
+        this.contact = contact;
+        this.busId = busId;
+        this.seatCount = seatCount;
+        this.journeyDate = journeyDate;
+        this.paymentMethod = paymentMethod;
+    }
+}
+
+// ============= Batch Booking Result =============
+class BookingResult {
+    enum Status {
+        CONFIRMED, INVALID_REQUEST, BUS_NOT_FOUND, SEATS_UNAVAILABLE, PAYMENT_FAILED, NOT_RECORDED,
+        SERVICE_CANCELLED // paid, but the bus was deleted or its service cancelled meanwhile
+    }
+
+    final Status status;
+    final Booking booking; // set only when CONFIRMED
+    final String message;
+
+    BookingResult(Status status, Booking booking, String message) {
+        this.status = status;
+        this.booking = booking;
+        this.message = message;
+    }
+
+    boolean isConfirmed() {
+        return status == Status.CONFIRMED;
+    }
+}
+
+// ============= Booking Service =============
+// Passenger operations (search, book, cancel, view) over the shared fleet
+// in AdminDashboard. Used by the console menu and the HTTP API alike.
+class BookingService {
+
+    List<Bus> searchRoute(String from, String to) {
+        long start = System.nanoTime();
+        List<Bus> found = AdminDashboard.registry.findByRoute(from, to);
+        Metrics.record(Metrics.Op.SEARCH, start, true);
+        return found;
+    }
+
+    List<Bus> searchType(String type) {
+        long start = System.nanoTime();
+        List<Bus> found = AdminDashboard.registry.findByType(type);
+        Metrics.record(Metrics.Op.SEARCH, start, true);
+        return found;
+    }
+
+    // Buses on a route leaving between two times (minutes after midnight),
+    // in departure order; see RouteIndex.findDepartures
+    List<Bus> searchDepartures(String from, String to, int earliest, int latest) {
+        long start = System.nanoTime();
+        List<Bus> found = AdminDashboard.registry.findDepartures(from, to, earliest, latest);
+        Metrics.record(Metrics.Op.SEARCH, start, true);
+        return found;
+    }
+
+    // The next bus on a route at or after 'after', possibly the next day
+    Bus nextDeparture(String from, String to, int after) {
+        long start = System.nanoTime();
+        Bus found = AdminDashboard.registry.nextDeparture(from, to, after);
+        Metrics.record(Metrics.Op.SEARCH, start, true);
+        return found;
+    }
+
+    // Journeys with changes of bus, for when no direct bus fits; see
+    // JourneyPlanner. 'after' is minutes past midnight on 'date'.
+    JourneyPlanner.Journey planEarliest(String from, String to, LocalDate date, int after, int seats) {
+        long start = System.nanoTime();
+        JourneyPlanner.Journey journey = AdminDashboard.registry.getPlanner().earliestArrival(from, to, date, after, seats);
+        Metrics.record(Metrics.Op.JOURNEY, start, true);
+        return journey;
+    }
+
+    JourneyPlanner.Journey planCheapest(String from, String to, LocalDate date, int after, int seats) {
+        long start = System.nanoTime();
+        JourneyPlanner.Journey journey = AdminDashboard.registry.getPlanner().cheapest(from, to, date, after, seats);
+        Metrics.record(Metrics.Op.JOURNEY, start, true);
+        return journey;
+    }
+
+    // Known cities a typed location may mean, best first; see LocationIndex
+    List<String> suggestLocations(String typed, int limit) {
+        return AdminDashboard.registry.getLocations().suggest(typed, limit);
+    }
+
+    // Cached searches with each bus's details ready to print
+    SearchCache.Result showRoute(String from, String to) {
+        long start = System.nanoTime();
+        SearchCache.Result found = AdminDashboard.registry.searchRoute(from, to);
+        Metrics.record(Metrics.Op.SEARCH, start, true);
+        return found;
+    }
+
+    SearchCache.Result showType(String type) {
+        long start = System.nanoTime();
+        SearchCache.Result found = AdminDashboard.registry.searchType(type);
+        Metrics.record(Metrics.Op.SEARCH, start, true);
+        return found;
+    }
+
+    SearchCache.Result showAll() {
+        long start = System.nanoTime();
+        SearchCache.Result found = AdminDashboard.registry.listAll();
+        Metrics.record(Metrics.Op.SEARCH, start, true);
+        return found;
+    }
+
+    Bus[] listBuses() {
+        return AdminDashboard.registry.toArray();
+    }
+
+    Bus findBus(int busId) {
+        return AdminDashboard.registry.get(busId);
+    }
+
+    // Quotes each passenger mix (seat counts by FareCategory ordinal) on
+    // each bus; result[b * mixes.length + m] is mix m on bus b
+    double[] quote(List<Bus> buses, int[][] mixes) {
+        return FareEngine.quote(buses, mixes, new double[buses.size() * mixes.length]);
+    }
+
+    // Books a single request, waiting for the payment
+    BookingResult book(BookingRequest request) {
+        return bookAsync(request).join();
+    }
+
+    // Books a single request without waiting for the payment. The seats are
+    // claimed straight away and given back if the payment fails.
+    CompletableFuture<BookingResult> bookAsync(BookingRequest request) {
+        long start = System.nanoTime();
+        String problem = validate(request);
+        if (problem != null) {
+            return failed(start, new BookingResult(BookingResult.Status.INVALID_REQUEST, null, problem));
+        }
+        Bus bus = AdminDashboard.registry.get(request.busId);
+        if (bus == null) {
+            return failed(start, new BookingResult(BookingResult.Status.BUS_NOT_FOUND, null,
+                    "Bus with ID " + request.busId + " not found!"));
+        }
+        String invalid = validate(bus, request);
+        if (invalid != null) {
+            return failed(start, new BookingResult(BookingResult.Status.INVALID_REQUEST, null, invalid));
+        }
+        Booking booking;
+        try {
+            booking = reserve(bus, request);
+        } catch (InvalidSeatException e) {
+            return failed(start, new BookingResult(BookingResult.Status.SEATS_UNAVAILABLE, null, e.getMessage()));
+        } catch (RuntimeException e) {
+            return failed(start, new BookingResult(BookingResult.Status.NOT_RECORDED, null,
+                    "Booking could not be recorded (" + e.getMessage() + ")."));
+        }
+        return pay(booking).thenApply(paid -> {
+            BookingResult result = paid;
+            if (result.isConfirmed()) {
+                try {
+                    AdminDashboard.journal.logBookingCreate(result.booking);
+                    AdminDashboard.bookings.add(result.booking);
+                } catch (RuntimeException e) {
+                    result = unrecorded(result.booking, e);
+                }
+            }
+            if (result.isConfirmed()) result = withdrawIfClosed(result);
+            Metrics.record(Metrics.Op.BOOKING, start, result.isConfirmed());
+            return result;
+        });
+    }
+
+    private static CompletableFuture<BookingResult> failed(long start, BookingResult result) {
+        Metrics.record(Metrics.Op.BOOKING, start, false);
+        return CompletableFuture.completedFuture(result);
+    }
+
+    // Holds seats on a bus while the passenger confirms and pays
+    SeatHold holdSeats(Bus bus, LocalDate date) throws InvalidSeatException {
+        return bus.holdSeats(date);
+    }
+
+    // Completes a booking the console has already priced and confirmed with
+    // the passenger: takes payment, turns the held seats into booked ones
+    // and records it. If the hold ran out during payment the seats are
+    // claimed again, and the booking fails if someone else took them.
+    BookingResult checkout(Booking booking, SeatHold hold) {
+        long start = System.nanoTime();
+        BookingResult result = confirm(booking, hold);
+        Metrics.record(Metrics.Op.BOOKING, start, result.isConfirmed());
+        return result;
+    }
+
+    private BookingResult confirm(Booking booking, SeatHold hold) {
+        if (!hold.isActive()) {
+            return new BookingResult(BookingResult.Status.SEATS_UNAVAILABLE, null,
+                    "Your seat hold has expired. Please select seats again.");
+        }
+        if (!booking.processPayment()) {
+            hold.release();
+            return new BookingResult(BookingResult.Status.PAYMENT_FAILED, null, "Payment failed. Please try again.");
+        }
+        if (!hold.confirm()) {
+            try {
+                booking.getBus().reserveSeats(booking.getJourneyDate(), booking.getSeatNumbers());
+            } catch (InvalidSeatException e) {
+                refundLostSeats(booking);
+                return new BookingResult(BookingResult.Status.SEATS_UNAVAILABLE, null,
+                        "Your seat hold expired during payment: " + e.getMessage() + ". The payment of Rs."
+                                + booking.getFinalAmount() + " has been refunded.");
+            }
+        }
+        AdminDashboard.journal.logBookingCreate(booking);
+        AdminDashboard.bookings.add(booking);
+        return withdrawIfClosed(new BookingResult(BookingResult.Status.CONFIRMED, booking,
+                "Booking " + booking.getBookingId() + " confirmed"));
+    }
+
+    // Gives back the payment of a booking that lost its seats after paying,
+    // and records the refund. The booking itself was never stored.
+    private static void refundLostSeats(Booking booking) {
+        AdminDashboard.refunds.record(List.of(new RefundLedger.Entry(booking.getBookingId(), booking.getBus().getId(),
+                booking.getFinalAmount(), System.currentTimeMillis(), RefundLedger.Reason.SEATS_LOST)));
+        reversePayment(booking);
+    }
+
+    // Undoes a paid booking the journal would not take: its seats go back
+    // and its payment is reversed. Nothing was stored, so nothing is
+    // refunded through the ledger.
+    private static BookingResult unrecorded(Booking booking, RuntimeException e) {
+        releaseSeats(booking.getBus(), booking.getJourneyDate(), booking.getSeatNumbers());
+        reversePayment(booking);
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return new BookingResult(BookingResult.Status.NOT_RECORDED, null, "Booking could not be recorded ("
+                + cause.getMessage() + "). The payment of Rs." + booking.getFinalAmount() + " has been reversed.");
+    }
+
+    // A stored booking whose bus has since been deleted or whose service
+    // cancelled is cancelled and refunded as the mass cancellation would
+    // have done. The booking is stored before this check and a departure
+    // is closed before its bookings are gathered, so every booking still
+    // paying at the time is caught by one of the two, and its own lock
+    // keeps it from being refunded twice.
+    private static BookingResult withdrawIfClosed(BookingResult result) {
+        Booking booking = result.booking;
+        Bus bus = booking.getBus();
+        LocalDate date = booking.getJourneyDate();
+        RefundLedger.Reason reason;
+        if (AdminDashboard.registry.get(bus.getId()) != bus) {
+            reason = RefundLedger.Reason.BUS_DELETED;
+        } else if (bus.isDepartureCancelled(date)) {
+            reason = RefundLedger.Reason.SERVICE_CANCELLED;
+        } else {
+            return result;
+        }
+        try {
+            cancel(booking, MassCancellation.hoursUntilDeparture(bus, date), reason);
+        } catch (RuntimeException e) {
+            System.out.println("✗ Could not cancel booking " + booking.getBookingId() + ": " + e.getMessage());
+            return result;
+        }
+        return new BookingResult(BookingResult.Status.SERVICE_CANCELLED, null, "Bus " + bus.getBusNo()
+                + " no longer runs on " + date + ". Booking " + booking.getBookingId() + " has been cancelled and refunded.");
+    }
+
+    private static void reversePayment(Booking booking) {
+        AdminDashboard.payments.reverse(booking.paymentId, booking.getFinalAmount()).whenComplete((done, error) -> {
+            if (error != null) {
+                System.out.println("✗ Could not reverse payment " + booking.paymentId + ": " + error.getMessage());
+            }
+        });
+    }
+
+    Booking findBooking(int bookingId) {
+        return AdminDashboard.bookings.get(bookingId);
+    }
+
+    // A page of the bookings made with a contact number, oldest first
+    List<Booking> findByContact(String contact, int offset, int limit) {
+        return AdminDashboard.bookings.findByContact(contact, offset, limit);
+    }
+
+    int countByContact(String contact) {
+        return AdminDashboard.bookings.countByContact(contact);
+    }
+
+    // A page of the bookings on one bus for one journey date, oldest first
+    List<Booking> findByBusDate(int busId, LocalDate date, int offset, int limit) {
+        return AdminDashboard.bookings.findByBusDate(busId, date, offset, limit);
+    }
+
+    // Cancels a booking, records its refund in the ledger and returns it,
+    // or null if the booking does not exist or is already cancelled
+    Double cancelBooking(int bookingId, int hoursBeforeJourney) {
+        long start = System.nanoTime();
+        Double refund = cancel(bookingId, hoursBeforeJourney);
+        Metrics.record(Metrics.Op.CANCELLATION, start, refund != null);
+        return refund;
+    }
+
+    private Double cancel(int bookingId, int hoursBeforeJourney) {
+        Booking booking = AdminDashboard.bookings.get(bookingId);
+        if (booking == null) return null;
+        return cancel(booking, hoursBeforeJourney, RefundLedger.Reason.PASSENGER);
+    }
+
+    private static Double cancel(Booking booking, int hoursBeforeJourney, RefundLedger.Reason reason) {
+        double refund;
+        synchronized (booking) {
+            if (booking.isCancelled()) return null;
+            refund = booking.calculateRefund(hoursBeforeJourney);
+            List<RefundLedger.Entry> refunds = List.of(new RefundLedger.Entry(booking.getBookingId(),
+                    booking.getBus().getId(), refund, System.currentTimeMillis(), reason));
+            // The refund is journaled with the cancellation, then added
+            AdminDashboard.refunds.record(refunds, () -> booking.cancel(refunds));
+        }
+        return refund;
+    }
+
+    // Books many requests together. Every request is checked first, then
+    // requests are grouped by bus and journey date, so each bus is looked
+    // up once and each date's seat map is claimed from in a single pass.
+    // All the payments then run at once, and the confirmed bookings share
+    // one journal commit. Returns a result for every request, in request
+    // order.
+    List<BookingResult> bookBatch(List<BookingRequest> requests) {
+        long start = System.nanoTime();
+        List<CompletableFuture<BookingResult>> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+
+        Map<Integer, List<Integer>> byBus = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String problem = validate(requests.get(i));
+            if (problem != null) {
+                results.set(i, done(BookingResult.Status.INVALID_REQUEST, problem));
+            } else {
+                byBus.computeIfAbsent(requests.get(i).busId, id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        for (Map.Entry<Integer, List<Integer>> group : byBus.entrySet()) {
+            Bus bus = AdminDashboard.registry.get(group.getKey());
+            Map<LocalDate, List<Integer>> byDate = new HashMap<>();
+            for (int i : group.getValue()) {
+                String problem = bus == null ? null : validate(bus, requests.get(i));
+                if (bus == null) {
+                    results.set(i, done(BookingResult.Status.BUS_NOT_FOUND, "Bus with ID " + group.getKey() + " not found!"));
+                } else if (problem != null) {
+                    results.set(i, done(BookingResult.Status.INVALID_REQUEST, problem));
+                } else {
+                    byDate.computeIfAbsent(requests.get(i).journeyDate, d -> new ArrayList<>()).add(i);
+                }
+            }
+            for (Map.Entry<LocalDate, List<Integer>> day : byDate.entrySet()) {
+                reserveDay(bus, day.getKey(), day.getValue(), requests, results);
+            }
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+
+        List<BookingResult> ordered = new ArrayList<>(results.size());
+        List<Booking> confirmed = new ArrayList<>();
+        for (CompletableFuture<BookingResult> future : results) {
+            BookingResult result = future.join();
+            ordered.add(result);
+            if (result.isConfirmed()) confirmed.add(result.booking);
+        }
+
+        try {
+            AdminDashboard.journal.logBookings(confirmed);
+            for (Booking booking : confirmed) {
+                AdminDashboard.bookings.add(booking);
+            }
+        } catch (RuntimeException e) {
+            // None of them is recorded, so every paid booking is undone
+            for (int i = 0; i < ordered.size(); i++) {
+                if (ordered.get(i).isConfirmed()) ordered.set(i, unrecorded(ordered.get(i).booking, e));
+            }
+        }
+        for (int i = 0; i < ordered.size(); i++) {
+            if (ordered.get(i).isConfirmed()) ordered.set(i, withdrawIfClosed(ordered.get(i)));
+        }
+        boolean anyConfirmed = false;
+        for (BookingResult result : ordered) anyConfirmed |= result.isConfirmed();
+        Metrics.record(Metrics.Op.BATCH_BOOKING, start, anyConfirmed);
+        return ordered;
+    }
+
+    // Claims the seats of every request for one bus and date in one pass
+    // over the date's seat map, then starts the payment of each one seated
+    private void reserveDay(Bus bus, LocalDate date, List<Integer> indexes, List<BookingRequest> requests,
+                            List<CompletableFuture<BookingResult>> results) {
+        int[][] picks = new int[indexes.size()][];
+        int[] counts = new int[indexes.size()];
+        for (int r = 0; r < picks.length; r++) {
+            BookingRequest request = requests.get(indexes.get(r));
+            picks[r] = request.seatNumbers;
+            counts[r] = request.seatCount;
+        }
+        int[] problems = new int[picks.length];
+        int[][] seated;
+        try {
+            seated = bus.reserveBatch(date, picks, counts, problems);
+        } catch (InvalidSeatException e) {
+            for (int i : indexes) results.set(i, done(BookingResult.Status.SEATS_UNAVAILABLE, e.getMessage()));
+            return;
+        }
+        for (int r = 0; r < picks.length; r++) {
+            int i = indexes.get(r);
+            if (seated[r] == null) {
+                results.set(i, done(BookingResult.Status.SEATS_UNAVAILABLE, picks[r] != null
+                        ? "Seat " + problems[r] + " is already booked"
+                        : "Only " + problems[r] + " seats available"));
+            } else {
+                try {
+                    results.set(i, pay(price(bus, requests.get(i), seated[r])));
+                } catch (RuntimeException e) {
+                    // No booking id could be leased from the journal
+                    releaseSeats(bus, date, seated[r]);
+                    results.set(i, done(BookingResult.Status.NOT_RECORDED,
+                            "Booking could not be recorded (" + e.getMessage() + ")."));
+                }
+            }
+        }
+    }
+
+    private static CompletableFuture<BookingResult> done(BookingResult.Status status, String message) {
+        return CompletableFuture.completedFuture(new BookingResult(status, null, message));
+    }
+
+    // Claims the seats for a request and prices it; nothing is charged yet
+    private Booking reserve(Bus bus, BookingRequest request) throws InvalidSeatException {
+        int[] seats;
+        if (request.seatNumbers != null) {
+            bus.reserveSeats(request.journeyDate, request.seatNumbers);
+            seats = request.seatNumbers.clone();
+        } else {
+            seats = bus.reserveGroup(request.journeyDate, request.seatCount);
+        }
+        try {
+            return price(bus, request, seats);
+        } catch (RuntimeException e) {
+            // No booking id could be leased from the journal
+            releaseSeats(bus, request.journeyDate, seats);
+            throw e;
+        }
+    }
+
+    // A booking for a request whose seats are already claimed
+    private static Booking price(Bus bus, BookingRequest request, int[] seats) {
+        Booking booking = new Booking(request.passengerName, request.gender, request.age, request.contact,
+                bus, seats, request.journeyDate);
+        booking.calculateFare();
+        booking.setPaymentMethod(request.paymentMethod);
+        return booking;
+    }
+
+    // Charges a reserved booking. If the payment fails its seats are
+    // released and the result says why.
+    private CompletableFuture<BookingResult> pay(Booking booking) {
+        return booking.processPaymentAsync().handle((paymentId, error) -> {
+            if (error == null) {
+                return new BookingResult(BookingResult.Status.CONFIRMED, booking,
+                        "Booking " + booking.getBookingId() + " confirmed");
+            }
+            releaseSeats(booking.getBus(), booking.getJourneyDate(), booking.getSeatNumbers());
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return new BookingResult(BookingResult.Status.PAYMENT_FAILED, null, cause.getMessage());
+        });
+    }
+
+    private static void releaseSeats(Bus bus, LocalDate date, int[] seats) {
+        for (int seat : seats) bus.cancelSeat(date, seat);
+    }
+
+    // Same checks as the interactive booking flow; null when valid
+    static String validate(BookingRequest request) {
+        if (request.passengerName == null || request.passengerName.isBlank()) {
+            return "Passenger name is required.";
+        }
+        if (!BookingJournal.fits(request.passengerName) || !BookingJournal.fits(request.gender)
+                || !BookingJournal.fits(request.paymentMethod)) {
+            return "Passenger name, gender or payment method is too long.";
+        }
+        if (request.age < 0) {
+            return "Age cannot be negative.";
+        }
+        if (request.contact == null || !request.contact.matches("\\d{10}")) {
+            return "Invalid contact number. Must be 10 digits.";
+        }
+        if (request.journeyDate == null || request.journeyDate.isBefore(LocalDate.now())) {
+            return "Journey date cannot be in the past.";
+        }
+        if (request.journeyDate.isAfter(LocalDate.now().plusDays(Bus.BOOKING_HORIZON_DAYS))) {
+            return "Bookings open only " + Bus.BOOKING_HORIZON_DAYS + " days in advance.";
+        }
+        if (request.seatNumbers == null && request.seatCount <= 0) {
+            return "Number of tickets must be positive.";
+        }
+        if (request.seatNumbers != null && request.seatNumbers.length == 0) {
+            return "No seats selected.";
+        }
+        if (request.paymentMethod == null || request.paymentMethod.isBlank()) {
+            return "Payment method is required.";
+        }
+        return null;
+    }
+
+    // The checks that need the bus: picked seats exist and are not repeated,
+    // and a seat count fits on the bus; null when valid
+    static String validate(Bus bus, BookingRequest request) {
+        if (request.seatNumbers == null) {
+            return request.seatCount > bus.getTotalSeats()
+                    ? "This bus has only " + bus.getTotalSeats() + " seats." : null;
+        }
+        try {
+            bus.validateSeats(request.seatNumbers);
+            return null;
+        } catch (InvalidSeatException e) {
+            return e.getMessage() + ".";
+        }
+    }
+}
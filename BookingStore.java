@@ -0,0 +1,138 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ============= Booking Store =============
+// Every booking, looked up by booking id, by the passenger's contact number
+// or by bus and journey date. Each index is a hash lookup followed by a page
+// of an append-only list, so the cost of a query does not grow with the
+// number of bookings held. Cancelled bookings stay in the store and are
+// only marked as cancelled.
+//
+// Booking ids come from here too. Ids are handed out with one atomic
+// increment, in blocks leased through the journal: each lease is logged
+// before any id in it is used, and recovery skips every leased block, so
+// an id is never issued twice, even after a crash.
+class BookingStore {
+    static final int FIRST_ID = 1001;
+    private static final int ID_BLOCK = 4096;
+
+    private final ConcurrentHashMap<Integer, Booking> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, BookingList> byContact = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, BookingList> byBusDate = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextId = new AtomicInteger(FIRST_ID);
+    private volatile int leasedTo = FIRST_ID - 1; // highest id covered by a logged lease
+
+    // Adds a booking to every index and to the sales analytics. Returns
+    // false if a booking with the same id is already stored, which happens
+    // when replaying the journal over a snapshot.
+    boolean add(Booking booking) {
+        if (byId.putIfAbsent(booking.getBookingId(), booking) != null) return false;
+        byContact.computeIfAbsent(booking.getContact(), c -> new BookingList()).add(booking);
+        int onDeparture = byBusDate.computeIfAbsent(busDateKey(booking.getBus().getId(),
+                booking.getJourneyDate().toEpochDay()), k -> new BookingList()).add(booking);
+        if (onDeparture == 1) AdminDashboard.analytics.departureOpened(booking.getBus(), booking.getJourneyDate());
+        synchronized (booking) {
+            if (!booking.isCancelled()) AdminDashboard.analytics.booked(booking);
+        }
+        if (booking.getBookingId() >= nextId.get()) skipPast(booking.getBookingId());
+        return true;
+    }
+
+    Booking get(int bookingId) {
+        return byId.get(bookingId);
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    // Live view of every booking, in no particular order
+    Collection<Booking> all() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    // A page of the bookings made with a contact number, oldest first
+    List<Booking> findByContact(String contact, int offset, int limit) {
+        BookingList list = byContact.get(contact);
+        return list == null ? List.of() : list.page(offset, limit);
+    }
+
+    int countByContact(String contact) {
+        BookingList list = byContact.get(contact);
+        return list == null ? 0 : list.size();
+    }
+
+    // A page of the bookings on one bus for one journey date, oldest first
+    List<Booking> findByBusDate(int busId, LocalDate date, int offset, int limit) {
+        BookingList list = byBusDate.get(busDateKey(busId, date.toEpochDay()));
+        return list == null ? List.of() : list.page(offset, limit);
+    }
+
+    int countByBusDate(int busId, LocalDate date) {
+        BookingList list = byBusDate.get(busDateKey(busId, date.toEpochDay()));
+        return list == null ? 0 : list.size();
+    }
+
+    private static long busDateKey(int busId, long epochDay) {
+        return ((long) busId << 32) | (epochDay & 0xFFFFFFFFL);
+    }
+
+    // ----- booking ids -----
+
+    int nextId() {
+        int id = nextId.getAndIncrement();
+        if (id > leasedTo) lease(id);
+        return id;
+    }
+
+    // Highest id that may have been handed out, for snapshots
+    int getLeasedTo() {
+        return leasedTo;
+    }
+
+    // Makes sure ids up to and including 'id' are never issued again. Used
+    // while recovering bookings and id leases.
+    synchronized void skipPast(int id) {
+        nextId.accumulateAndGet(id + 1, Math::max);
+        if (id > leasedTo) leasedTo = id;
+    }
+
+    // Logs a lease for a new block starting at 'id' before it is used.
+    // Only threads that run into the new block wait for the journal.
+    private synchronized void lease(int id) {
+        if (id <= leasedTo) return;
+        int end = id + ID_BLOCK - 1;
+        AdminDashboard.journal.logIdLease(end);
+        leasedTo = end;
+    }
+
+    // Append-only list that grows by doubling. Readers copy out a page
+    // under the lock, so a page is a stable snapshot.
+    private static final class BookingList {
+        private Booking[] items = new Booking[4];
+        private int size;
+
+        // Returns the new size
+        synchronized int add(Booking booking) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = booking;
+            return size;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized List<Booking> page(int offset, int limit) {
+            if (offset < 0 || limit <= 0 || offset >= size) return List.of();
+            int end = (int) Math.min((long) offset + limit, size);
+            return Arrays.asList(Arrays.copyOfRange(items, offset, end));
+        }
+    }
+}
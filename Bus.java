@@ -1,3 +1,16 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 // ============= Custom Exceptions =============
 class InvalidBusException extends Exception {
     public InvalidBusException(String message) {
@@ -25,6 +38,10 @@ abstract class Payment {
     abstract boolean processPayment();
     abstract void generateReceipt();
     
+    // Non-blocking payment: completes with the payment id once the gateway
+    // has authorised the amount, or exceptionally with PaymentFailedException
+    abstract CompletableFuture<String> processPaymentAsync();
+    
     void displayPaymentInfo() {
         System.out.println("Payment ID: " + paymentId + ", Amount: Rs." + amount);
     }
@@ -38,19 +55,21 @@ interface Cancellable {
 }
 
 // ============= Enhanced Bus Class =============
+// A bus's details live in the shared FleetStore; a Bus is a view of its
+// row there, plus the bus's seat inventory
 class Bus {
-    private int id;
-    private String busNo;
-    String operator;
-    String type;
-    String from;
-    String to;
-    String time;
-    private int totalSeats;
-    private boolean[] seatStatus; // true = booked, false = available
-    private double distanceKm;
-    private double pricePerKm;
-    static int busCount = 0;
+    static final FleetStore STORE = new FleetStore();
+    private final int row;
+    // One lock-free seat bitmap per journey date, created on first booking
+    // and dropped once the date has passed. The map itself is created with
+    // the bus's first booking; most of a large fleet is never booked.
+    private volatile ConcurrentHashMap<LocalDate, SeatMap> inventory;
+    private volatile LocalDate purgedBefore = LocalDate.MIN;
+    // Journey dates whose service was cancelled; null until one is
+    private volatile Set<LocalDate> cancelledDates;
+    volatile FareEngine.FareTable fareTable; // cached by FareEngine
+    static final AtomicInteger busCount = new AtomicInteger();
+    static final int BOOKING_HORIZON_DAYS = 90;
     
     static {
         System.out.println("Static Block: Bus Booking System Initialized");
@@ -58,83 +77,310 @@ class Bus {
 
     public Bus(int id, String busNo, String operator, String type, String from, 
                String to, String time, int totalSeats, double distanceKm, double pricePerKm) {
-        this.id = id;
-        this.busNo = busNo;
-        this.operator = operator;
-        this.type = type;
-        this.from = from;
-        this.to = to;
-        this.time = time;
-        this.totalSeats = totalSeats;
-        this.distanceKm = distanceKm;
-        this.pricePerKm = pricePerKm;
-        this.seatStatus = new boolean[totalSeats + 1]; // index 0 unused
-        busCount++;
+        this.row = STORE.append(id, busNo, operator, type, from, to, time, totalSeats, distanceKm, pricePerKm);
+        busCount.incrementAndGet();
+    }
+
+    // Hands the bus's row back to the store. Only for a bus nothing else
+    // holds, such as one refused before it joined the fleet.
+    void release() {
+        STORE.free(row);
     }
 
     // Getters
-    public int getId() { return id; }
-    public String getBusNo() { return busNo; }
-    public int getTotalSeats() { return totalSeats; }
+    public int getId() { return STORE.id(row); }
+    public String getBusNo() { return STORE.busNo(row); }
+    public int getTotalSeats() { return STORE.totalSeats(row); }
     // Returns fare per seat = distance * pricePerKm
-    public double getBaseFare() { return distanceKm * pricePerKm; }
+    public double getBaseFare() { return getDistanceKm() * getPricePerKm(); }
+
+    public String getOperator() { return STORE.operator(row); }
+    public String getType() { return STORE.type(row); }
+    public String getFrom() { return STORE.from(row); }
+    public String getTo() { return STORE.to(row); }
+    public String getTime() { return STORE.time(row); }
+    // Minutes after midnight the bus leaves, or -1 if its time is unreadable
+    int getDepartureMinutes() { return STORE.departureMinutes(row); }
 
-    public double getDistanceKm() { return distanceKm; }
-    public double getPricePerKm() { return pricePerKm; }
+    public double getDistanceKm() { return STORE.distanceKm(row); }
+    public double getPricePerKm() { return STORE.pricePerKm(row); }
 
-    public void setDistanceKm(double distanceKm) { this.distanceKm = distanceKm; }
-    public void setPricePerKm(double pricePerKm) { this.pricePerKm = pricePerKm; }
+    public void setDistanceKm(double distanceKm) { STORE.setDistanceKm(row, distanceKm); }
+    public void setPricePerKm(double pricePerKm) { STORE.setPricePerKm(row, pricePerKm); }
     
     // Setters
-    public void setOperator(String operator) { this.operator = operator; }
-    public void setType(String type) { this.type = type; }
-    public void setTime(String time) { this.time = time; }
+    public void setOperator(String operator) { STORE.setOperator(row, operator); }
+    public void setType(String type) { STORE.setType(row, type); }
+    public void setFrom(String from) { STORE.setFrom(row, from); }
+    public void setTo(String to) { STORE.setTo(row, to); }
+    public void setTime(String time) { STORE.setTime(row, time); }
     
-    public boolean isSeatAvailable(int seatNo) {
-        if (seatNo < 1 || seatNo > totalSeats) return false;
-        return !seatStatus[seatNo];
+    public boolean isSeatAvailable(LocalDate date, int seatNo) {
+        if (seatNo < 1 || seatNo > getTotalSeats()) return false;
+        SeatMap seats = peekSeats(date);
+        return seats == null || seats.isFree(seatNo);
     }
     
-    public void bookSeat(int seatNo) throws InvalidSeatException {
-        if (seatNo < 1 || seatNo > totalSeats) {
+    public void bookSeat(LocalDate date, int seatNo) throws InvalidSeatException {
+        if (seatNo < 1 || seatNo > getTotalSeats()) {
             throw new InvalidSeatException("Invalid seat number: " + seatNo);
         }
-        if (seatStatus[seatNo]) {
+        if (!seatsFor(date).tryReserve(seatNo)) {
+            Metrics.seatConflict(getId());
             throw new InvalidSeatException("Seat " + seatNo + " is already booked");
         }
-        seatStatus[seatNo] = true;
     }
     
-    public void cancelSeat(int seatNo) {
-        if (seatNo >= 1 && seatNo <= totalSeats) {
-            seatStatus[seatNo] = false;
+    // Books every seat in the list or none of them
+    public void reserveSeats(LocalDate date, int[] seatNumbers) throws InvalidSeatException {
+        validateSeats(seatNumbers);
+        int taken = seatsFor(date).reserve(seatNumbers);
+        if (taken != 0) {
+            Metrics.seatConflict(getId());
+            throw new InvalidSeatException("Seat " + taken + " is already booked");
+        }
+    }
+    
+    // Books any 'count' free seats on the date and returns their numbers
+    public int[] reserveAnySeats(LocalDate date, int count) throws InvalidSeatException {
+        if (count <= 0) {
+            throw new InvalidSeatException("Number of seats must be positive");
+        }
+        SeatMap seats = seatsFor(date);
+        while (true) {
+            int[] free = seats.findFree(count);
+            if (free == null) {
+                throw new InvalidSeatException("Only " + seats.countAvailable() + " seats available");
+            }
+            // Another booker may take one of them first; look again if so
+            if (seats.reserve(free) == 0) return free;
+            Metrics.seatConflict(getId());
+        }
+    }
+    
+    // Books 'count' seats together on the date (see SeatMap.findGroup) and
+    // returns their numbers
+    public int[] reserveGroup(LocalDate date, int count) throws InvalidSeatException {
+        if (count <= 0) {
+            throw new InvalidSeatException("Number of seats must be positive");
+        }
+        SeatMap seats = seatsFor(date);
+        while (true) {
+            int[] group = seats.findGroup(count);
+            if (group == null) {
+                throw new InvalidSeatException("Only " + seats.countAvailable() + " seats available");
+            }
+            // Another booker may take one of them first; look again if so
+            if (seats.reserve(group) == 0) return group;
+            Metrics.seatConflict(getId());
+        }
+    }
+    
+    // Books seats for many bookings on one date in a single pass over its
+    // seat map; see SeatMap.reserveBatch. Picks must already be validated.
+    int[][] reserveBatch(LocalDate date, int[][] picks, int[] counts, int[] problems) throws InvalidSeatException {
+        int[][] seated = seatsFor(date).reserveBatch(picks, counts, problems);
+        for (int r = 0; r < seated.length; r++) {
+            if (seated[r] == null && picks[r] != null) Metrics.seatConflict(getId());
+        }
+        return seated;
+    }
+
+    // Starts an empty hold on the date; seats are added as they are picked
+    SeatHold holdSeats(LocalDate date) throws InvalidSeatException {
+        return new SeatHold(this, date, seatsFor(date));
+    }
+    
+    public void cancelSeat(LocalDate date, int seatNo) {
+        SeatMap seats = peekSeats(date);
+        if (seats != null && seatNo >= 1 && seatNo <= getTotalSeats()) {
+            seats.release(seatNo);
         }
     }
     
+    // Frees many seats on one date with a CAS per word of the seat map
+    void releaseSeats(LocalDate date, int[] seatNumbers) {
+        SeatMap seats = peekSeats(date);
+        if (seats != null) seats.release(seatNumbers);
+    }
+    
+    public int getAvailableSeats(LocalDate date) {
+        SeatMap seats = peekSeats(date);
+        return seats == null ? getTotalSeats() : seats.countAvailable();
+    }
+    
+    // Availability for today's departure
     public int getAvailableSeats() {
-        int count = 0;
-        for (int i = 1; i <= totalSeats; i++) {
-            if (!seatStatus[i]) count++;
+        return getAvailableSeats(LocalDate.now());
+    }
+    
+    // Marks seats booked while rebuilding state from the journal. Seats for
+    // dates that have already passed are skipped.
+    void restoreSeats(LocalDate date, int[] seatNumbers) {
+        if (date.isBefore(LocalDate.now())) return;
+        purgeExpired();
+        SeatMap seats = inventory().computeIfAbsent(date, d -> new SeatMap(getTotalSeats()));
+        for (int seatNo : seatNumbers) {
+            if (seatNo >= 1 && seatNo <= getTotalSeats()) {
+                seats.tryReserve(seatNo);
+            }
+        }
+    }
+    
+    // Copy of every live date's seat words, for snapshots
+    Map<LocalDate, long[]> copyInventory() {
+        purgeExpired();
+        Map<LocalDate, long[]> copy = new HashMap<>();
+        ConcurrentHashMap<LocalDate, SeatMap> days = inventory;
+        if (days == null) return copy;
+        for (Map.Entry<LocalDate, SeatMap> entry : days.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copyWords());
+        }
+        return copy;
+    }
+    
+    // Installs a date's seat words loaded from a snapshot
+    void restoreInventory(LocalDate date, long[] words) {
+        if (date.isBefore(LocalDate.now())) return;
+        inventory().put(date, new SeatMap(getTotalSeats(), words));
+    }
+    
+    // Number of journey dates currently holding a seat bitmap
+    int getInventoryDays() {
+        purgeExpired();
+        ConcurrentHashMap<LocalDate, SeatMap> days = inventory;
+        return days == null ? 0 : days.size();
+    }
+    
+    // Journey dates still to come that have a seat bitmap, which includes
+    // every date with a booking
+    List<LocalDate> getInventoryDates() {
+        purgeExpired();
+        ConcurrentHashMap<LocalDate, SeatMap> days = inventory;
+        if (days == null) return new ArrayList<>();
+        List<LocalDate> dates = new ArrayList<>(days.keySet());
+        Collections.sort(dates);
+        return dates;
+    }
+    
+    // Closes a journey date for good: no seat on it can be claimed again
+    void cancelDeparture(LocalDate date) {
+        if (date.isBefore(LocalDate.now())) return;
+        Set<LocalDate> dates = cancelledDates;
+        if (dates == null) {
+            synchronized (this) {
+                dates = cancelledDates;
+                if (dates == null) cancelledDates = dates = ConcurrentHashMap.newKeySet();
+            }
+        }
+        dates.add(date);
+    }
+    
+    boolean isDepartureCancelled(LocalDate date) {
+        Set<LocalDate> dates = cancelledDates;
+        return dates != null && dates.contains(date);
+    }
+    
+    // Cancelled journey dates still to come, for snapshots
+    List<LocalDate> getCancelledDates() {
+        purgeExpired();
+        Set<LocalDate> dates = cancelledDates;
+        return dates == null ? new ArrayList<>() : new ArrayList<>(dates);
+    }
+    
+    // Returns the bitmap for a bookable date, allocating it on first use
+    private SeatMap seatsFor(LocalDate date) throws InvalidSeatException {
+        LocalDate today = LocalDate.now();
+        if (date.isBefore(today)) {
+            throw new InvalidSeatException("Journey date " + date + " has already passed");
+        }
+        if (date.isAfter(today.plusDays(BOOKING_HORIZON_DAYS))) {
+            throw new InvalidSeatException("Bookings open only " + BOOKING_HORIZON_DAYS + " days in advance");
+        }
+        if (isDepartureCancelled(date)) {
+            throw new InvalidSeatException("The service on " + date + " has been cancelled");
+        }
+        purgeExpired();
+        return inventory().computeIfAbsent(date, d -> new SeatMap(getTotalSeats()));
+    }
+    
+    // Returns the bitmap for a date without allocating one
+    private SeatMap peekSeats(LocalDate date) {
+        purgeExpired();
+        ConcurrentHashMap<LocalDate, SeatMap> days = inventory;
+        return days == null ? null : days.get(date);
+    }
+    
+    // The date-to-bitmap map, created on first use
+    private ConcurrentHashMap<LocalDate, SeatMap> inventory() {
+        ConcurrentHashMap<LocalDate, SeatMap> days = inventory;
+        if (days == null) {
+            synchronized (this) {
+                days = inventory;
+                if (days == null) inventory = days = new ConcurrentHashMap<>();
+            }
+        }
+        return days;
+    }
+    
+    // Drops bitmaps and cancelled dates that have passed, at most once per day
+    private void purgeExpired() {
+        LocalDate today = LocalDate.now();
+        if (!today.isAfter(purgedBefore)) return;
+        purgedBefore = today;
+        ConcurrentHashMap<LocalDate, SeatMap> days = inventory;
+        if (days != null) days.keySet().removeIf(date -> date.isBefore(today));
+        Set<LocalDate> cancelled = cancelledDates;
+        if (cancelled != null) cancelled.removeIf(date -> date.isBefore(today));
+    }
+    
+    // Checks a pick of seats is non-empty, in range and has no repeats
+    void validateSeats(int[] seatNumbers) throws InvalidSeatException {
+        if (seatNumbers.length == 0) {
+            throw new InvalidSeatException("No seats selected");
+        }
+        for (int i = 0; i < seatNumbers.length; i++) {
+            int seatNo = seatNumbers[i];
+            if (seatNo < 1 || seatNo > getTotalSeats()) {
+                throw new InvalidSeatException("Invalid seat number: " + seatNo);
+            }
+            for (int j = 0; j < i; j++) {
+                if (seatNumbers[j] == seatNo) {
+                    throw new InvalidSeatException("Seat " + seatNo + " selected more than once");
+                }
+            }
         }
-        return count;
     }
     
     void show() {
-        System.out.println("==================================");
-        System.out.println("Bus ID: " + id + ", Bus No: " + busNo);
-        System.out.println("Operator: " + operator + ", Type: " + type);
-        System.out.println("Route: " + from + " → " + to);
-        System.out.println("Departure: " + time);
-        System.out.println("Available Seats: " + getAvailableSeats() + "/" + totalSeats);
-        System.out.println("Distance: " + distanceKm + " km | Price per km: Rs." + pricePerKm);
-        System.out.println("Base Fare (per seat): Rs." + getBaseFare());
-        System.out.println("==================================");
+        String[] parts = showParts();
+        System.out.print(parts[0] + getAvailableSeats() + parts[1]);
+    }
+    
+    // The show() text split around today's availability, which is the
+    // only part that changes between bookings; see SearchCache
+    String[] showParts() {
+        FareEngine.FareTable fares = FareEngine.table(this);
+        String head = "==================================\n"
+                + "Bus ID: " + getId() + ", Bus No: " + getBusNo() + "\n"
+                + "Operator: " + getOperator() + ", Type: " + getType() + "\n"
+                + "Route: " + getFrom() + " → " + getTo() + "\n"
+                + "Departure: " + getTime() + "\n"
+                + "Available Seats (today): ";
+        String tail = "/" + getTotalSeats() + "\n"
+                + "Distance: " + getDistanceKm() + " km | Price per km: Rs." + getPricePerKm() + "\n"
+                + "Base Fare (per seat): Rs." + fares.baseFare + "\n"
+                + "Fares: Adult Rs." + fares.perSeat(FareCategory.ADULT)
+                + " | Child Rs." + fares.perSeat(FareCategory.CHILD)
+                + " | Senior Rs." + fares.perSeat(FareCategory.SENIOR) + "\n"
+                + "==================================\n";
+        return new String[] {head, tail};
     }
 }
 
 // ============= Enhanced Booking Class =============
 class Booking extends Payment implements Cancellable {
-    private static int bookingCounter = 1000;
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private int bookingId;
     private String passengerName;
     private String gender;
@@ -143,15 +389,16 @@ class Booking extends Payment implements Cancellable {
     private Bus bus;
     private int[] seatNumbers;
     private String bookingDate;
-    private String journeyDate;
+    private LocalDate journeyDate;
     private String paymentMethod;
     private double discount;
     private double finalAmount;
     private boolean isCancelled;
+    Analytics.Groups analytics; // the sales totals it counts in, once stored
     
     public Booking(String passengerName, String gender, int age, String contact,
-                   Bus bus, int[] seatNumbers, String journeyDate) {
-        this.bookingId = ++bookingCounter;
+                   Bus bus, int[] seatNumbers, LocalDate journeyDate) {
+        this.bookingId = AdminDashboard.bookings.nextId();
         this.passengerName = passengerName;
         this.gender = gender;
         this.age = age;
@@ -163,90 +410,69 @@ class Booking extends Payment implements Cancellable {
         this.isCancelled = false;
     }
     
+    // Rebuilds a confirmed booking read back from the journal
+    Booking(int bookingId, String passengerName, String gender, int age, String contact,
+            Bus bus, int[] seatNumbers, LocalDate journeyDate, String bookingDate,
+            String paymentMethod, double discount, double finalAmount) {
+        this.bookingId = bookingId;
+        this.passengerName = passengerName;
+        this.gender = gender;
+        this.age = age;
+        this.contact = contact;
+        this.bus = bus;
+        this.seatNumbers = seatNumbers;
+        this.journeyDate = journeyDate;
+        this.bookingDate = bookingDate;
+        this.paymentMethod = paymentMethod;
+        this.discount = discount;
+        this.finalAmount = finalAmount;
+        this.amount = finalAmount;
+        this.isCancelled = false;
+    }
+    
     public double calculateFare() {
-        double totalFare = bus.getBaseFare() * seatNumbers.length;
-        
-        // Apply discounts
-        if (age < 12) {
-            discount = totalFare * 0.25; // 25% child discount
-        } else if (age >= 60) {
-            discount = totalFare * 0.30; // 30% senior citizen discount
-        } else {
-            discount = 0;
-        }
-        
-        finalAmount = totalFare - discount;
+        // Child and senior discounts come from the bus's fare table
+        FareEngine.FareTable fares = FareEngine.table(bus);
+        double totalFare = fares.baseFare * seatNumbers.length;
+        finalAmount = fares.perSeat(FareCategory.forAge(age)) * seatNumbers.length;
+        discount = totalFare - finalAmount;
         this.amount = finalAmount;
         return finalAmount;
     }
     
+    // Waits for the payment pipeline; the console has nothing else to do
     @Override
     public boolean processPayment() {
         System.out.println("\n=== Processing Payment ===");
         System.out.println("Total Amount: Rs." + finalAmount);
-        return true;
+        try {
+            processPaymentAsync().join();
+            System.out.println("Payment ID: " + paymentId);
+            return true;
+        } catch (CompletionException e) {
+            System.out.println("Payment not completed: " + e.getCause().getMessage());
+            return false;
+        }
+    }
+    
+    @Override
+    CompletableFuture<String> processPaymentAsync() {
+        return AdminDashboard.payments.charge("BK" + bookingId, finalAmount, paymentMethod)
+                .thenApply(id -> paymentId = id);
     }
     
     @Override
     public void generateReceipt() {
-        System.out.println("=============================================");
-        System.out.println("         BUS TICKET - BOOKING CONFIRMED      ");
-        System.out.println("=============================================");
-        System.out.println("\n--- PASSENGER DETAILS ---");
-        System.out.println("Name: " + passengerName);
-        System.out.println("Gender: " + gender);
-        System.out.println("Age: " + age);
-        System.out.println("Contact: " + contact);
-        
-        System.out.println("\n--- BOOKING DETAILS ---");
-        System.out.println("Booking ID: " + bookingId);
-        System.out.println("Booking Date: " + bookingDate);
-        System.out.println("Journey Date: " + journeyDate);
-        
-        System.out.println("\n--- BUS DETAILS ---");
-        System.out.println("Bus No: " + bus.getBusNo());
-        System.out.println("Bus Type: " + bus.type);
-        System.out.println("Operator: " + bus.operator);
-        System.out.println("From: " + bus.from + " To: " + bus.to);
-        System.out.println("Departure Time: " + bus.time);
-        
-        System.out.println("\n--- SEAT DETAILS ---");
-        System.out.print("Seat Numbers: ");
-        for (int seat : seatNumbers) {
-            System.out.print(seat + " ");
-        }
-        System.out.println("\nTotal Tickets: " + seatNumbers.length);
-        
-        System.out.println("\n--- PAYMENT DETAILS ---");
-        System.out.println("Base Fare per Seat: Rs." + bus.getBaseFare());
-        System.out.println("Subtotal: Rs." + (bus.getBaseFare() * seatNumbers.length));
-        if (discount > 0) {
-            System.out.println("Discount Applied: Rs." + discount);
+        try {
+            ReceiptRenderer.forThread().render(this, System.out);
+        } catch (java.io.IOException e) {
+            System.out.println("✗ Could not print receipt: " + e.getMessage());
         }
-        System.out.println("Total Payable: Rs." + finalAmount);
-        System.out.println("Payment Method: " + paymentMethod);
-        System.out.println("Payment Status: PAID");
-        
-        displayCancellationPolicy();
-        
-        System.out.println("\n--- TERMS & CONDITIONS ---");
-        System.out.println("1. Please arrive 15 minutes before departure");
-        System.out.println("2. Carry a valid ID proof during journey");
-        System.out.println("3. No refund for no-show passengers");
-        System.out.println("4. Management reserves the right to change timings");
-        
-        System.out.println("=============================================");
-        System.out.println("     Thank you for choosing our service!     ");
-        System.out.println("=============================================");
     }
     
     @Override
     public void displayCancellationPolicy() {
-        System.out.println("\n--- CANCELLATION POLICY ---");
-        System.out.println("• 24+ hours before departure: 90% refund");
-        System.out.println("• 12-24 hours before: 50% refund");
-        System.out.println("• 6-12 hours before: 25% refund");
-        System.out.println("• Less than 6 hours: No refund");
+        System.out.print(ReceiptRenderer.CANCELLATION_POLICY);
     }
     
     @Override
@@ -258,12 +484,22 @@ class Booking extends Payment implements Cancellable {
     }
     
     @Override
-    public void cancelBooking(int bookingId) {
-        if (this.bookingId == bookingId && !isCancelled) {
+    public synchronized void cancelBooking(int bookingId) {
+        if (this.bookingId == bookingId) cancel(List.of());
+    }
+    
+    // Cancels the booking, journaling the refunds it is owed in the same
+    // unit as the cancellation
+    synchronized void cancel(List<RefundLedger.Entry> refunds) {
+        if (!isCancelled) {
+            // Journal before freeing, so a rebooking of these seats can
+            // never be logged ahead of this cancellation
+            AdminDashboard.journal.logBookingCancel(this, refunds);
             for (int seat : seatNumbers) {
-                bus.cancelSeat(seat);
+                bus.cancelSeat(journeyDate, seat);
             }
             isCancelled = true;
+            AdminDashboard.analytics.cancelled(this);
             System.out.println("Booking " + bookingId + " cancelled successfully.");
         }
     }
@@ -272,6 +508,37 @@ class Booking extends Payment implements Cancellable {
         this.paymentMethod = method;
     }
     
+    public LocalDate getJourneyDate() {
+        return journeyDate;
+    }
+    
+    public String getPassengerName() { return passengerName; }
+    public String getGender() { return gender; }
+    public int getAge() { return age; }
+    public String getContact() { return contact; }
+    public Bus getBus() { return bus; }
+    public int[] getSeatNumbers() { return seatNumbers; }
+    public String getBookingDate() { return bookingDate; }
+    public String getPaymentMethod() { return paymentMethod; }
+    public double getDiscount() { return discount; }
+    public double getFinalAmount() { return finalAmount; }
+    
+    // Marks a booking cancelled without touching its seats. Used when
+    // replaying the journal, whose seat records restore the seats, and by
+    // MassCancellation, which frees a whole chunk's seats at once.
+    synchronized void markCancelled() {
+        if (isCancelled) return;
+        isCancelled = true;
+        AdminDashboard.analytics.cancelled(this);
+    }
+
+    // Undoes markCancelled when the cancellation could not be recorded
+    synchronized void unmarkCancelled() {
+        if (!isCancelled) return;
+        isCancelled = false;
+        AdminDashboard.analytics.restored(this);
+    }
+    
     public int getBookingId() {
         return bookingId;
     }
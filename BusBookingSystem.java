@@ -1,8 +1,97 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 public class BusBookingSystem {
+    // Journal location, durability and snapshot interval, e.g.
+    // -Dbusbooking.data=data -Dbusbooking.durability=SYNC -Dbusbooking.snapshot.minutes=10
+    static final String DATA_DIR = System.getProperty("busbooking.data", "data");
+    static final String DURABILITY = System.getProperty("busbooking.durability", "SYNC");
+    static final long SNAPSHOT_MINUTES = Long.getLong("busbooking.snapshot.minutes", 10);
+    static final long HOLD_MINUTES = Long.getLong("busbooking.hold.minutes", 10);
+    // Searches kept by the search cache; 0 turns it off
+    static final int SEARCH_CACHE_SIZE = Integer.getInteger("busbooking.search.cache", 1024);
+    // Operations at least this slow are also sent to JFR; see Metrics
+    static final long SLOW_OPERATION_MICROS = Long.getLong("busbooking.metrics.slow.micros", 1000);
+
+    // Payment gateway stand-in and pipeline limits, e.g.
+    // -Dbusbooking.gateway.latency.ms=200 -Dbusbooking.gateway.failure.rate=0.05
+    // -Dbusbooking.gateway.decline.rate=0.01 -Dbusbooking.payment.concurrency=64
+    static final long GATEWAY_LATENCY_MS = Long.getLong("busbooking.gateway.latency.ms", 20);
+    static final double GATEWAY_FAILURE_RATE = Double.parseDouble(System.getProperty("busbooking.gateway.failure.rate", "0"));
+    static final double GATEWAY_DECLINE_RATE = Double.parseDouble(System.getProperty("busbooking.gateway.decline.rate", "0"));
+    static final int PAYMENT_CONCURRENCY = Integer.getInteger("busbooking.payment.concurrency", 64);
+    static final long PAYMENT_TIMEOUT_MS = Long.getLong("busbooking.payment.timeout.ms", 5000);
+
+    // One console reader shared by every menu
+    static final Scanner CONSOLE = new Scanner(System.in);
+
+    // Reads a whole line from the console, so answers may contain spaces
+    // ("New Delhi"). Blank lines are skipped, including the end of a line
+    // left behind by an earlier next() or nextInt().
+    static String readLine() {
+        String line = CONSOLE.nextLine();
+        while (line.isBlank()) line = CONSOLE.nextLine();
+        return line.trim();
+    }
+
+    // Latency varies between half and one and a half times the setting
+    static PaymentProcessor newPaymentProcessor() {
+        PaymentGateway gateway = new SimulatedGateway(GATEWAY_LATENCY_MS / 2, GATEWAY_LATENCY_MS * 3 / 2,
+                GATEWAY_FAILURE_RATE, GATEWAY_DECLINE_RATE, System.nanoTime());
+        return new PaymentProcessor(gateway, PAYMENT_CONCURRENCY, PAYMENT_TIMEOUT_MS, 3, 100, 100, 1000);
+    }
+
+    static void recover() {
+        try {
+            BookingJournal.Durability durability = BookingJournal.Durability.valueOf(DURABILITY.toUpperCase());
+            Path dir = Path.of(DATA_DIR);
+            BookingJournal journal = BookingJournal.open(dir, durability);
+            SnapshotStore snapshots = new SnapshotStore(dir, journal);
+            
+            long start = System.nanoTime();
+            long segment = snapshots.load(AdminDashboard.registry, AdminDashboard.bookings, AdminDashboard.refunds);
+            int records = journal.replay(AdminDashboard.registry, AdminDashboard.bookings,
+                    AdminDashboard.refunds, segment);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            
+            AdminDashboard.journal = journal;
+            snapshots.schedule(SNAPSHOT_MINUTES, AdminDashboard.registry, AdminDashboard.bookings,
+                    AdminDashboard.refunds);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                snapshots.shutdown();
+                AdminDashboard.payments.close();
+                journal.close();
+            }));
+            System.out.println("Recovered " + AdminDashboard.registry.size() + " buses and "
+                    + AdminDashboard.bookings.size() + " bookings (" + records
+                    + " journal records after snapshot) in " + millis + " ms.");
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("✗ Could not open journal, running in memory only: " + e.getMessage());
+        }
+    }
+
+    // Run with --http <port> to serve the JSON API instead of the console
+    // menu, or with --simulate [key=value...] to load-test an in-memory
+    // fleet (see LoadSimulator)
     public static void main(String[] args) {
-        Scanner sc = new Scanner(System.in);
+        if (args.length >= 1 && args[0].equals("--simulate")) {
+            LoadSimulator.simulate(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        recover();
+        if (args.length >= 1 && args[0].equals("--http")) {
+            int port = args.length >= 2 ? Integer.parseInt(args[1]) : 8080;
+            try {
+                new BookingHttpServer(new FleetService(), new BookingService()).start(port);
+                System.out.println("Serving the booking API on port " + port);
+            } catch (IOException e) {
+                System.out.println("✗ Could not start HTTP server: " + e.getMessage());
+            }
+            return;
+        }
+        
+        Scanner sc = CONSOLE;
         int choice;
         while(true){
             System.out.println("======================");
@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ============= Bus Registry =============
+// Growable home for the fleet. Buses sit in a dense array for fast
+// iteration; an open-addressing table of primitive int keys maps a bus id
+// to its position, so no Integer boxing happens on lookup. Add, find and
+// delete are O(1): delete moves the last bus into the freed position.
+// The registry also keeps the route/type index, the location dictionary,
+// the search cache and the journey planner in step with the fleet.
+class BusRegistry {
+    private static final int EMPTY = 0;
+
+    private Bus[] buses = new Bus[16];
+    private int size = 0;
+
+    // keys[i] = bus id, slots[i] = position in buses + 1 (0 = empty)
+    private int[] keys = new int[32];
+    private int[] slots = new int[32];
+
+    private final RouteIndex routeIndex = new RouteIndex();
+    private final LocationIndex locations = new LocationIndex();
+    private final SearchCache searchCache;
+    private final JourneyPlanner planner = new JourneyPlanner(this);
+
+    BusRegistry() {
+        this(BusBookingSystem.SEARCH_CACHE_SIZE);
+    }
+
+    BusRegistry(int searchCacheSize) {
+        this.searchCache = new SearchCache(searchCacheSize);
+    }
+
+    synchronized void add(Bus bus) throws InvalidBusException {
+        if (find(bus.getId()) >= 0) {
+            throw new InvalidBusException("Bus ID " + bus.getId() + " already exists!");
+        }
+        if (size == buses.length) {
+            buses = Arrays.copyOf(buses, size * 2);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        buses[size] = bus;
+        insert(bus.getId(), size + 1);
+        size++;
+        routeIndex.add(bus);
+        locations.add(bus.getFrom());
+        locations.add(bus.getTo());
+        searchCache.invalidate(bus);
+        planner.busChanged(bus.getId());
+    }
+
+    // Adds every bus whose id is not taken, by the fleet or an earlier bus
+    // in the list, and returns the positions of those that were refused
+    synchronized List<Integer> addAll(List<Bus> batch) {
+        List<Integer> refused = new ArrayList<>();
+        List<Bus> added = new ArrayList<>(batch.size());
+        Map<String, Integer> endpoints = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Bus bus = batch.get(i);
+            if (find(bus.getId()) >= 0) {
+                refused.add(i);
+                continue;
+            }
+            if (size == buses.length) {
+                buses = Arrays.copyOf(buses, size * 2);
+            }
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            buses[size] = bus;
+            insert(bus.getId(), size + 1);
+            size++;
+            endpoints.merge(bus.getFrom(), 1, Integer::sum);
+            endpoints.merge(bus.getTo(), 1, Integer::sum);
+            planner.busChanged(bus.getId());
+            added.add(bus);
+        }
+        routeIndex.addAll(added);
+        endpoints.forEach(locations::add);
+        searchCache.invalidate(added);
+        return refused;
+    }
+
+    synchronized Bus get(int id) {
+        int i = find(id);
+        return i < 0 ? null : buses[slots[i] - 1];
+    }
+
+    synchronized boolean contains(int id) {
+        return find(id) >= 0;
+    }
+
+    synchronized Bus remove(int id) {
+        int i = find(id);
+        if (i < 0) return null;
+
+        int position = slots[i] - 1;
+        Bus removed = buses[position];
+        deleteSlot(i);
+
+        int last = --size;
+        if (position != last) {
+            Bus moved = buses[last];
+            buses[position] = moved;
+            slots[find(moved.getId())] = position + 1;
+        }
+        buses[last] = null;
+        routeIndex.remove(removed);
+        locations.remove(removed.getFrom());
+        locations.remove(removed.getTo());
+        searchCache.invalidate(removed);
+        planner.busChanged(id);
+        return removed;
+    }
+
+    // Call after editing any detail of a bus in place
+    void reindex(Bus bus, String oldFrom, String oldTo, String oldType) {
+        routeIndex.update(bus, oldFrom, oldTo, oldType);
+        locations.add(bus.getFrom());
+        locations.add(bus.getTo());
+        locations.remove(oldFrom);
+        locations.remove(oldTo);
+        searchCache.invalidate(oldFrom, oldTo, oldType);
+        searchCache.invalidate(bus);
+        planner.busChanged(bus.getId());
+    }
+
+    List<Bus> findByRoute(String from, String to) {
+        return routeIndex.findByRoute(from, to);
+    }
+
+    List<Bus> findByType(String type) {
+        return routeIndex.findByType(type);
+    }
+
+    List<Bus> findDepartures(String from, String to, int earliest, int latest) {
+        return routeIndex.findDepartures(from, to, earliest, latest);
+    }
+
+    Bus nextDeparture(String from, String to, int after) {
+        return routeIndex.nextDeparture(from, to, after);
+    }
+
+    // ----- cached searches, for display -----
+
+    SearchCache.Result searchRoute(String from, String to) {
+        return searchCache.get(SearchCache.routeKey(from, to), () -> routeIndex.findByRoute(from, to));
+    }
+
+    SearchCache.Result searchType(String type) {
+        return searchCache.get(SearchCache.typeKey(type), () -> routeIndex.findByType(type));
+    }
+
+    SearchCache.Result listAll() {
+        return searchCache.get(SearchCache.ALL, () -> Arrays.asList(toArray()));
+    }
+
+    LocationIndex getLocations() {
+        return locations;
+    }
+
+    JourneyPlanner getPlanner() {
+        return planner;
+    }
+
+    SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Point-in-time copy of the fleet, safe to iterate without locking
+    synchronized Bus[] toArray() {
+        return Arrays.copyOf(buses, size);
+    }
+
+    // ----- open addressing on primitive keys -----
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(int id) {
+        int mask = keys.length - 1;
+        int i = hash(id) & mask;
+        while (slots[i] != EMPTY) {
+            if (keys[i] == id) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int id, int slot) {
+        int mask = keys.length - 1;
+        int i = hash(id) & mask;
+        while (slots[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        slots[i] = slot;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private void deleteSlot(int i) {
+        int mask = keys.length - 1;
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (slots[j] == EMPTY) break;
+            int home = hash(keys[j]) & mask;
+            boolean movable = (j > hole) ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                keys[hole] = keys[j];
+                slots[hole] = slots[j];
+                hole = j;
+            }
+        }
+        slots[hole] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new int[capacity];
+        slots = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSlots[i] != EMPTY) {
+                insert(oldKeys[i], oldSlots[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.List;
+
+// ============= Fare Categories =============
+// Passenger categories and their discounts off the base fare
+enum FareCategory {
+    ADULT(0.0),
+    CHILD(0.25),   // under 12
+    SENIOR(0.30);  // 60 and over
+
+    static final FareCategory[] ALL = values();
+
+    final double discountRate;
+
+    FareCategory(double discountRate) {
+        this.discountRate = discountRate;
+    }
+
+    static FareCategory forAge(int age) {
+        if (age < 12) return CHILD;
+        if (age >= 60) return SENIOR;
+        return ADULT;
+    }
+}
+
+// ============= Fare Engine =============
+// Prices seats from a per-bus table holding the fare of one seat in every
+// category. A table is built on first use and kept on the bus, so quoting
+// is a field read and an array lookup. Changing a bus's distance or price
+// per km invalidates its table. A table also remembers the settings it was
+// built from and is rebuilt if they no longer match, so a quote racing with
+// an update can never keep a stale table alive.
+class FareEngine {
+
+    static final class FareTable {
+        final double distanceKm;
+        final double pricePerKm;
+        final double baseFare;
+        private final double[] perSeat; // indexed by FareCategory ordinal
+
+        private FareTable(double distanceKm, double pricePerKm) {
+            this.distanceKm = distanceKm;
+            this.pricePerKm = pricePerKm;
+            this.baseFare = distanceKm * pricePerKm;
+            this.perSeat = new double[FareCategory.ALL.length];
+            for (FareCategory category : FareCategory.ALL) {
+                perSeat[category.ordinal()] = baseFare * (1 - category.discountRate);
+            }
+        }
+
+        double perSeat(FareCategory category) {
+            return perSeat[category.ordinal()];
+        }
+
+        private boolean matches(Bus bus) {
+            return distanceKm == bus.getDistanceKm() && pricePerKm == bus.getPricePerKm();
+        }
+    }
+
+    private FareEngine() {}
+
+    // The current fare table of a bus, built if missing or out of date
+    static FareTable table(Bus bus) {
+        FareTable table = bus.fareTable;
+        if (table == null || !table.matches(bus)) {
+            table = new FareTable(bus.getDistanceKm(), bus.getPricePerKm());
+            bus.fareTable = table;
+        }
+        return table;
+    }
+
+    // Drops the cached table after the fare settings of a bus change
+    static void invalidate(Bus bus) {
+        bus.fareTable = null;
+    }
+
+    static double perSeat(Bus bus, FareCategory category) {
+        return table(bus).perSeat(category);
+    }
+
+    // Total for 'seats' seats in one category
+    static double quote(Bus bus, FareCategory category, int seats) {
+        return perSeat(bus, category) * seats;
+    }
+
+    // Total for a passenger mix, given as seat counts indexed by
+    // FareCategory ordinal
+    static double quote(Bus bus, int[] mix) {
+        FareTable table = table(bus);
+        double total = 0;
+        for (int c = 0; c < mix.length; c++) {
+            total += table.perSeat[c] * mix[c];
+        }
+        return total;
+    }
+
+    // Quotes every passenger mix on every bus without allocating. Totals
+    // are written to 'out' row by row: out[b * mixes.length + m] is mix m
+    // on bus b. Returns 'out'.
+    static double[] quote(List<Bus> buses, int[][] mixes, double[] out) {
+        if (out.length < buses.size() * mixes.length) {
+            throw new IllegalArgumentException("Output holds " + out.length + " quotes, "
+                    + buses.size() * mixes.length + " needed");
+        }
+        int i = 0;
+        for (int b = 0; b < buses.size(); b++) {
+            FareTable table = table(buses.get(b));
+            for (int[] mix : mixes) {
+                double total = 0;
+                for (int c = 0; c < mix.length; c++) {
+                    total += table.perSeat[c] * mix[c];
+                }
+                out[i++] = total;
+            }
+        }
+        return out;
+    }
+
+    // Per-seat fare of every category on every bus: out[b * categories + c]
+    static double[] perSeat(List<Bus> buses, double[] out) {
+        int categories = FareCategory.ALL.length;
+        if (out.length < buses.size() * categories) {
+            throw new IllegalArgumentException("Output holds " + out.length + " fares, "
+                    + buses.size() * categories + " needed");
+        }
+        for (int b = 0; b < buses.size(); b++) {
+            System.arraycopy(table(buses.get(b)).perSeat, 0, out, b * categories, categories);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+// ============= Fleet Service =============
+// Admin operations on the fleet, shared by the console dashboard and the
+// HTTP API. Every change is validated, indexed and journaled here.
+class FleetService {
+    private final MassCancellation cancellations =
+            new MassCancellation(AdminDashboard.bookings, AdminDashboard.refunds);
+
+    Bus addBus(int id, String busNo, String operator, String type, String from, String to,
+               String time, int seats, double distanceKm, double pricePerKm) throws InvalidBusException {
+        if (AdminDashboard.registry.contains(id)) {
+            throw new InvalidBusException("Bus ID " + id + " already exists!");
+        }
+        if (seats <= 0) {
+            throw new InvalidBusException("Number of seats must be positive!");
+        }
+        validateFare(distanceKm, pricePerKm);
+        validateTime(time);
+        validateText("Bus number", busNo);
+        validateText("Operator", operator);
+        validateText("Bus type", type);
+        validateText("From", from);
+        validateText("To", to);
+
+        Bus bus = new Bus(id, busNo, operator, type, from, to, time, seats, distanceKm, pricePerKm);
+        AdminDashboard.registry.add(bus);
+        AdminDashboard.journal.logBusAdd(bus);
+        return bus;
+    }
+
+    // Changes the given details of a bus; null arguments are left as they
+    // are. Returns null if there is no bus with that id.
+    Bus updateBus(int id, String operator, String type, String from, String to, String time,
+                  Double distanceKm, Double pricePerKm) throws InvalidBusException {
+        Bus bus = AdminDashboard.registry.get(id);
+        if (bus == null) return null;
+        if (distanceKm != null || pricePerKm != null) {
+            validateFare(distanceKm != null ? distanceKm : bus.getDistanceKm(),
+                    pricePerKm != null ? pricePerKm : bus.getPricePerKm());
+        }
+        if (time != null) validateTime(time);
+        validateText("Operator", operator);
+        validateText("Bus type", type);
+        validateText("From", from);
+        validateText("To", to);
+
+        synchronized (bus) {
+            String oldFrom = bus.getFrom();
+            String oldTo = bus.getTo();
+            String oldType = bus.getType();
+
+            if (operator != null) bus.setOperator(operator);
+            if (type != null) bus.setType(type);
+            if (from != null) bus.setFrom(from);
+            if (to != null) bus.setTo(to);
+            if (time != null) bus.setTime(time);
+            if (distanceKm != null) bus.setDistanceKm(distanceKm);
+            if (pricePerKm != null) bus.setPricePerKm(pricePerKm);
+            if (distanceKm != null || pricePerKm != null) FareEngine.invalidate(bus);
+
+            AdminDashboard.registry.reindex(bus, oldFrom, oldTo, oldType);
+            AdminDashboard.journal.logBusUpdate(bus);
+        }
+        return bus;
+    }
+
+    // Takes a bus out of the fleet, then cancels and refunds every booking
+    // on it for a date still to come. It leaves search first, so no new
+    // booking can land on it while the old ones are cancelled, and one still
+    // paying is cancelled when it completes. Returns null if there is no bus
+    // with that id.
+    MassCancellation.Result deleteBus(int id) {
+        Bus bus = AdminDashboard.registry.remove(id);
+        if (bus == null) return null;
+        AdminDashboard.journal.logBusDelete(id);
+        return cancellations.cancelAll(bus, RefundLedger.Reason.BUS_DELETED);
+    }
+
+    // Cancels the service of one bus on one date: every booking on it is
+    // cancelled and refunded, and the bus stays in the fleet. Returns null
+    // if there is no bus with that id.
+    MassCancellation.Result cancelService(int id, LocalDate date) {
+        Bus bus = AdminDashboard.registry.get(id);
+        if (bus == null) return null;
+        // Closed before its bookings are gathered, so a booking still paying
+        // is either gathered here or cancelled when it completes
+        AdminDashboard.journal.logDepartureCancel(bus, date);
+        bus.cancelDeparture(date);
+        return cancellations.cancel(bus, date, RefundLedger.Reason.SERVICE_CANCELLED);
+    }
+
+    // Loads buses in bulk from a CSV or binary timetable; see FleetTransfer
+    FleetTransfer.Result importBuses(Path file, Writer errors) throws IOException {
+        return new FleetTransfer().importFleet(file, errors);
+    }
+
+    // Writes the whole fleet out in the same formats
+    int exportBuses(Path file, boolean binary) throws IOException {
+        return new FleetTransfer().exportFleet(file, binary);
+    }
+
+    Bus getBus(int id) {
+        return AdminDashboard.registry.get(id);
+    }
+
+    Bus[] listBuses() {
+        return AdminDashboard.registry.toArray();
+    }
+
+    // A departure time must be a real HH:MM time of day
+    static void validateTime(String time) throws InvalidBusException {
+        if (time == null || time.length() != 5 || time.charAt(2) != ':' || JourneyPlanner.departure(time) < 0) {
+            throw new InvalidBusException("Departure time must be HH:MM, from 00:00 to 23:59!");
+        }
+    }
+
+    // A text detail must fit the journal's string length
+    static void validateText(String field, String value) throws InvalidBusException {
+        if (!BookingJournal.fits(value)) {
+            throw new InvalidBusException(field + " is too long!");
+        }
+    }
+
+    private static void validateFare(double distanceKm, double pricePerKm) throws InvalidBusException {
+        if (distanceKm <= 0) {
+            throw new InvalidBusException("Distance must be positive!");
+        }
+        if (pricePerKm <= 0) {
+            throw new InvalidBusException("Price per km must be positive!");
+        }
+    }
+}
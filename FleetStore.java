@@ -0,0 +1,275 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ============= Fleet Store =============
+// The details of every bus, held in columns rather than one object per
+// bus; a Bus is a view of its row here. Rows are grouped in chunks of
+// CHUNK, each chunk holding one primitive array per column, so reading a
+// detail of many buses walks a few contiguous arrays, and a chunk never
+// moves once allocated, so an edit can never land in a stale copy.
+//
+//  - operator, type, the two locations and the departure time repeat
+//    across the fleet, so each is stored once in a Dictionary and the
+//    row keeps its int code;
+//  - the departure time is also kept as minutes after midnight (-1 when
+//    unreadable), which is what the route index, journey planner and
+//    refund rules work from;
+//  - bus numbers are mostly unique, so they are packed as UTF-8 bytes
+//    into a fixed slot of BUS_NO_BYTES per row instead of a String each;
+//    a longer number is kept as a String beside the chunk.
+// A row is handed back only where its Bus is known to be unreachable: a
+// bus refused on import, or one read from a snapshot that is then
+// rejected. Its row and dictionary entries are reused by a later bus. A
+// deleted bus keeps its row, since its bookings, receipts and payments in
+// flight still read it. Only taking a row is done under the store's lock;
+// the row is filled in outside it.
+class FleetStore {
+    private static final int CHUNK_BITS = 12;
+    static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int MASK = CHUNK - 1;
+    private static final int BUS_NO_BYTES = 16;
+
+    // Distinct strings of a column, each with an int code and a count of
+    // the rows using it. A value no row uses is dropped and its code
+    // reused. Taking a value already present, or decoding a code, does not
+    // lock; adding or dropping one does.
+    static final class Dictionary {
+        private static final class Entry {
+            final int code;
+            final AtomicInteger rows = new AtomicInteger(1); // -1 once dropped
+
+            Entry(int code) {
+                this.code = code;
+            }
+        }
+
+        private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private Entry[] byCode = new Entry[16];
+        private int[] freeCodes = new int[16];
+        private int freeCount;
+        private int size;
+
+        // The code for 'value', counting one more row using it; null is -1
+        int acquire(String value) {
+            if (value == null) return -1;
+            Entry entry = entries.get(value);
+            if (entry != null) {
+                for (int n = entry.rows.get(); n > 0; n = entry.rows.get()) {
+                    if (entry.rows.compareAndSet(n, n + 1)) return entry.code;
+                }
+            }
+            return add(value);
+        }
+
+        // A row no longer uses the value with this code
+        void release(int code) {
+            if (code < 0) return;
+            Entry entry;
+            synchronized (this) {
+                entry = byCode[code];
+            }
+            if (entry.rows.decrementAndGet() == 0) drop(entry);
+        }
+
+        String decode(int code) {
+            return code < 0 ? null : values[code];
+        }
+
+        synchronized int size() {
+            return size - freeCount;
+        }
+
+        private synchronized int add(String value) {
+            Entry entry = entries.get(value);
+            if (entry != null) {
+                // Present entries are never dropped while the lock is held
+                entry.rows.incrementAndGet();
+                return entry.code;
+            }
+            int code;
+            String[] grown = values;
+            if (freeCount > 0) {
+                code = freeCodes[--freeCount];
+            } else {
+                code = size++;
+                if (code == grown.length) {
+                    grown = Arrays.copyOf(grown, code * 2);
+                    byCode = Arrays.copyOf(byCode, code * 2);
+                }
+            }
+            entry = new Entry(code);
+            grown[code] = value;
+            byCode[code] = entry;
+            values = grown; // published before the code can be seen
+            entries.put(value, entry);
+            return code;
+        }
+
+        private synchronized void drop(Entry entry) {
+            if (!entry.rows.compareAndSet(0, -1)) return; // taken again meanwhile
+            int code = entry.code;
+            entries.remove(values[code], entry);
+            values[code] = null;
+            byCode[code] = null;
+            if (freeCount == freeCodes.length) freeCodes = Arrays.copyOf(freeCodes, freeCount * 2);
+            freeCodes[freeCount++] = code;
+        }
+    }
+
+    private static final class Chunk {
+        final int[] ids = new int[CHUNK];
+        final int[] totalSeats = new int[CHUNK];
+        final double[] distanceKm = new double[CHUNK];
+        final double[] pricePerKm = new double[CHUNK];
+        final int[] operators = new int[CHUNK];
+        final int[] types = new int[CHUNK];
+        final int[] froms = new int[CHUNK];
+        final int[] tos = new int[CHUNK];
+        final int[] times = new int[CHUNK];
+        final short[] minutes = new short[CHUNK];
+        final byte[] busNos = new byte[CHUNK * BUS_NO_BYTES];
+        final byte[] busNoLengths = new byte[CHUNK]; // -1: in longBusNos
+        volatile String[] longBusNos;
+    }
+
+    private final Dictionary operators = new Dictionary();
+    private final Dictionary types = new Dictionary();
+    private final Dictionary locations = new Dictionary(); // both ends of a route
+    private final Dictionary times = new Dictionary();
+    private volatile Chunk[] chunks = new Chunk[16];
+    private int size;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    // Fills a new row and returns its number
+    int append(int id, String busNo, String operator, String type, String from, String to,
+               String time, int totalSeats, double distanceKm, double pricePerKm) {
+        int row = take();
+        Chunk c = chunk(row);
+        int i = row & MASK;
+        c.ids[i] = id;
+        c.totalSeats[i] = totalSeats;
+        c.distanceKm[i] = distanceKm;
+        c.pricePerKm[i] = pricePerKm;
+        c.operators[i] = operators.acquire(operator);
+        c.types[i] = types.acquire(type);
+        c.froms[i] = locations.acquire(from);
+        c.tos[i] = locations.acquire(to);
+        c.times[i] = times.acquire(time);
+        c.minutes[i] = minutes(time);
+        setBusNo(c, i, busNo);
+        return row;
+    }
+
+    private synchronized int take() {
+        if (freeCount > 0) return freeRows[--freeCount];
+        if ((size & MASK) == 0) {
+            Chunk[] grown = size >>> CHUNK_BITS == chunks.length ? Arrays.copyOf(chunks, chunks.length * 2) : chunks;
+            grown[size >>> CHUNK_BITS] = new Chunk();
+            chunks = grown;
+        }
+        return size++;
+    }
+
+    // Hands a row back for reuse. Its bus must be unreachable, as nothing
+    // may read the row afterwards.
+    void free(int row) {
+        Chunk c = chunk(row);
+        int i = row & MASK;
+        operators.release(c.operators[i]);
+        types.release(c.types[i]);
+        locations.release(c.froms[i]);
+        locations.release(c.tos[i]);
+        times.release(c.times[i]);
+        if (c.busNoLengths[i] < 0) c.longBusNos[i] = null;
+        synchronized (this) {
+            if (freeCount == freeRows.length) freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            freeRows[freeCount++] = row;
+        }
+    }
+
+    // Rows held by buses
+    synchronized int size() {
+        return size - freeCount;
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    int id(int row) { return chunk(row).ids[row & MASK]; }
+    int totalSeats(int row) { return chunk(row).totalSeats[row & MASK]; }
+    double distanceKm(int row) { return chunk(row).distanceKm[row & MASK]; }
+    double pricePerKm(int row) { return chunk(row).pricePerKm[row & MASK]; }
+    String operator(int row) { return operators.decode(chunk(row).operators[row & MASK]); }
+    String type(int row) { return types.decode(chunk(row).types[row & MASK]); }
+    String from(int row) { return locations.decode(chunk(row).froms[row & MASK]); }
+    String to(int row) { return locations.decode(chunk(row).tos[row & MASK]); }
+    String time(int row) { return times.decode(chunk(row).times[row & MASK]); }
+    int departureMinutes(int row) { return chunk(row).minutes[row & MASK]; }
+
+    String busNo(int row) {
+        Chunk c = chunk(row);
+        int i = row & MASK;
+        int length = c.busNoLengths[i];
+        if (length < 0) return c.longBusNos[i];
+        return new String(c.busNos, i * BUS_NO_BYTES, length, StandardCharsets.UTF_8);
+    }
+
+    void setDistanceKm(int row, double distanceKm) { chunk(row).distanceKm[row & MASK] = distanceKm; }
+    void setPricePerKm(int row, double pricePerKm) { chunk(row).pricePerKm[row & MASK] = pricePerKm; }
+
+    void setOperator(int row, String operator) {
+        int[] column = chunk(row).operators;
+        operators.release(swap(column, row & MASK, operators.acquire(operator)));
+    }
+
+    void setType(int row, String type) {
+        int[] column = chunk(row).types;
+        types.release(swap(column, row & MASK, types.acquire(type)));
+    }
+
+    void setFrom(int row, String from) {
+        int[] column = chunk(row).froms;
+        locations.release(swap(column, row & MASK, locations.acquire(from)));
+    }
+
+    void setTo(int row, String to) {
+        int[] column = chunk(row).tos;
+        locations.release(swap(column, row & MASK, locations.acquire(to)));
+    }
+
+    void setTime(int row, String time) {
+        Chunk c = chunk(row);
+        int i = row & MASK;
+        times.release(swap(c.times, i, times.acquire(time)));
+        c.minutes[i] = minutes(time);
+    }
+
+    private static int swap(int[] column, int i, int code) {
+        int old = column[i];
+        column[i] = code;
+        return old;
+    }
+
+    private static short minutes(String time) {
+        return (short) (time == null ? -1 : JourneyPlanner.departure(time));
+    }
+
+    private static void setBusNo(Chunk c, int i, String busNo) {
+        byte[] bytes = busNo == null ? new byte[0] : busNo.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= BUS_NO_BYTES) {
+            System.arraycopy(bytes, 0, c.busNos, i * BUS_NO_BYTES, bytes.length);
+            c.busNoLengths[i] = (byte) bytes.length;
+            return;
+        }
+        synchronized (c) {
+            if (c.longBusNos == null) c.longBusNos = new String[CHUNK];
+        }
+        c.longBusNos[i] = busNo;
+        c.busNoLengths[i] = -1;
+    }
+}
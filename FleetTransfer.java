@@ -0,0 +1,444 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// ============= Fleet Import / Export =============
+// Loads a timetable of buses from a file, or writes the fleet out to one,
+// one row per bus. Two formats:
+//  - CSV with the header line CSV_HEADER; fields holding a comma, quote or
+//    line break are quoted, with quotes doubled;
+//  - binary: MAGIC, then per bus a 1 byte, the id, six strings (writeUTF)
+//    and seats, distance and price per km; a 0 byte ends the file.
+// The format of an import is told from its first four bytes.
+//
+// An import streams: the file is read in chunks of CHUNK rows, chunks are
+// parsed and validated on a pool of threads, and at most WINDOW chunks are
+// in flight, so memory use does not grow with the file. Chunks are added
+// to the fleet in file order, each with one journal write. A row that
+// fails is skipped and reported with its line (CSV) or record number
+// (binary); the rest of the file still loads.
+class FleetTransfer {
+    static final String CSV_HEADER = "id,busNo,operator,type,from,to,time,totalSeats,distanceKm,pricePerKm";
+    static final int MAGIC = 0x42555346; // "BUSF"
+    static final int CHUNK = 8192;
+    static final int MAX_REPORTED = 20; // errors kept in the result
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int WINDOW = THREADS * 2;
+
+    // One row that could not be loaded
+    static final class RowError {
+        final long row;
+        final String message;
+
+        RowError(long row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "row " + row + ": " + message;
+        }
+    }
+
+    // What an import did
+    static final class Result {
+        long rows;
+        long added;
+        long failed;
+        long millis;
+        final List<RowError> firstErrors = new ArrayList<>();
+
+        @Override
+        public String toString() {
+            return added + " of " + rows + " buses added, " + failed + " rows rejected, in " + millis + " ms";
+        }
+    }
+
+    // A row as read, before checking: a CSV line, or a binary record
+    // already split into fields
+    private static final class Raw {
+        final long row;
+        final String line;
+        final Object[] fields;
+
+        Raw(long row, String line, Object[] fields) {
+            this.row = row;
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+
+    // A chunk after parsing: buses ready to add, in file order, and the
+    // rows that failed
+    private static final class Parsed {
+        final List<Bus> buses = new ArrayList<>();
+        final List<Long> rows = new ArrayList<>();
+        final List<RowError> errors = new ArrayList<>();
+    }
+
+    private interface RowReader extends AutoCloseable {
+        Raw next() throws IOException; // null at the end
+
+        @Override
+        void close() throws IOException;
+    }
+
+    // ----- import -----
+
+    // Loads every valid row of 'file' into the fleet. Rejected rows are
+    // written to 'errors', one per line, if it is not null.
+    Result importFleet(Path file, Writer errors) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "fleet-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try (RowReader reader = open(file)) {
+            ArrayDeque<Future<Parsed>> inFlight = new ArrayDeque<>();
+            while (true) {
+                List<Raw> chunk = new ArrayList<>(CHUNK);
+                Raw raw;
+                while (chunk.size() < CHUNK && (raw = reader.next()) != null) chunk.add(raw);
+                if (chunk.isEmpty()) break;
+                result.rows += chunk.size();
+                if (inFlight.size() == WINDOW) insert(await(inFlight.poll()), result, errors);
+                inFlight.add(pool.submit(() -> parse(chunk)));
+            }
+            while (!inFlight.isEmpty()) insert(await(inFlight.poll()), result, errors);
+        } finally {
+            pool.shutdownNow();
+        }
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    private static Parsed await(Future<Parsed> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    // Adds a parsed chunk to the fleet in row order. Ids are checked for
+    // uniqueness here, against the fleet and earlier rows, since only here
+    // is the order known.
+    private void insert(Parsed parsed, Result result, Writer errors) throws IOException {
+        List<RowError> failed = new ArrayList<>(parsed.errors);
+        List<Integer> refused = AdminDashboard.registry.addAll(parsed.buses);
+        List<Bus> added = new ArrayList<>(parsed.buses);
+        for (int r = refused.size() - 1; r >= 0; r--) {
+            int i = refused.get(r);
+            failed.add(new RowError(parsed.rows.get(i), "Bus ID " + parsed.buses.get(i).getId() + " already exists!"));
+            added.remove(i).release();
+        }
+        AdminDashboard.journal.logBusAdds(added);
+        result.added += added.size();
+
+        failed.sort((a, b) -> Long.compare(a.row, b.row));
+        for (RowError error : failed) {
+            result.failed++;
+            if (result.firstErrors.size() < MAX_REPORTED) result.firstErrors.add(error);
+            if (errors != null) errors.write(error + "\n");
+        }
+    }
+
+    // Runs on the pool: the same checks as adding a bus by hand. An id
+    // already in the fleet or in this chunk is refused before a bus is
+    // built; insert() still catches one repeated from a chunk in flight.
+    private static Parsed parse(List<Raw> chunk) {
+        Parsed parsed = new Parsed();
+        Set<Integer> ids = new HashSet<>();
+        for (Raw raw : chunk) {
+            try {
+                Object[] f = raw.fields != null ? raw.fields : csvFields(raw.line);
+                int id = (Integer) f[0];
+                if (ids.contains(id) || AdminDashboard.registry.contains(id)) {
+                    throw new InvalidBusException("Bus ID " + id + " already exists!");
+                }
+                int seats = (Integer) f[7];
+                double distanceKm = (Double) f[8];
+                double pricePerKm = (Double) f[9];
+                for (int i = 1; i <= 6; i++) {
+                    if (((String) f[i]).isBlank()) throw new InvalidBusException(CSV_HEADER.split(",")[i] + " is empty");
+                    FleetService.validateText(CSV_HEADER.split(",")[i], (String) f[i]);
+                }
+                if (seats <= 0) throw new InvalidBusException("Number of seats must be positive!");
+                if (distanceKm <= 0) throw new InvalidBusException("Distance must be positive!");
+                if (pricePerKm <= 0) throw new InvalidBusException("Price per km must be positive!");
+                FleetService.validateTime((String) f[6]);
+                parsed.buses.add(new Bus(id, (String) f[1], (String) f[2], (String) f[3], (String) f[4],
+                        (String) f[5], (String) f[6], seats, distanceKm, pricePerKm));
+                parsed.rows.add(raw.row);
+                ids.add(id);
+            } catch (InvalidBusException | IllegalArgumentException e) {
+                parsed.errors.add(new RowError(raw.row, e.getMessage()));
+            }
+        }
+        return parsed;
+    }
+
+    // Splits and converts one CSV line into the ten fields of a bus
+    private static Object[] csvFields(String line) {
+        List<String> values = splitCsv(line);
+        if (values.size() != 10) {
+            throw new IllegalArgumentException("expected 10 fields, found " + values.size());
+        }
+        Object[] f = new Object[10];
+        f[0] = number(values.get(0), "id");
+        for (int i = 1; i <= 6; i++) f[i] = values.get(i).trim();
+        f[7] = number(values.get(7), "totalSeats");
+        f[8] = decimal(values.get(8), "distanceKm");
+        f[9] = decimal(values.get(9), "pricePerKm");
+        return f;
+    }
+
+    private static Integer number(String text, String field) {
+        try {
+            return Integer.valueOf(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not a whole number: '" + text + "'");
+        }
+    }
+
+    private static Double decimal(String text, String field) {
+        try {
+            return Double.valueOf(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not a number: '" + text + "'");
+        }
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>(10);
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quote");
+        values.add(value.toString());
+        return values;
+    }
+
+    // ----- readers -----
+
+    private static RowReader open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        in.mark(4);
+        byte[] head = in.readNBytes(4);
+        in.reset();
+        boolean binary = head.length == 4
+                && ((head[0] & 0xFF) << 24 | (head[1] & 0xFF) << 16 | (head[2] & 0xFF) << 8 | (head[3] & 0xFF)) == MAGIC;
+        return binary ? binaryReader(new DataInputStream(in)) : csvReader(in);
+    }
+
+    // Reads one record at a time. A line break inside a quoted field belongs
+    // to the field, so a record may span lines; its row is the line it
+    // starts on.
+    private static RowReader csvReader(InputStream in) {
+        Reader chars = new InputStreamReader(in, StandardCharsets.UTF_8);
+        return new RowReader() {
+            final char[] buf = new char[1 << 16];
+            final StringBuilder record = new StringBuilder();
+            int pos, limit;
+            long line = 1; // the line the next record starts on
+
+            @Override
+            public Raw next() throws IOException {
+                while (true) {
+                    long row = line;
+                    record.setLength(0);
+                    boolean quoted = false;
+                    boolean ended = false;
+                    int c;
+                    while ((c = read()) >= 0) {
+                        if (c == '"') {
+                            quoted = !quoted; // a doubled quote flips twice
+                        } else if (c == '\n' || c == '\r') {
+                            if (c == '\n' || peek() != '\n') line++;
+                            if (!quoted) {
+                                if (c == '\r' && peek() == '\n') {
+                                    read();
+                                    line++;
+                                }
+                                ended = true;
+                                break;
+                            }
+                        }
+                        record.append((char) c);
+                    }
+                    if (!ended && record.length() == 0) return null;
+                    String text = record.toString();
+                    if (text.isBlank()) continue;
+                    if (row == 1 && text.trim().equalsIgnoreCase(CSV_HEADER)) continue;
+                    return new Raw(row, text, null);
+                }
+            }
+
+            private int read() throws IOException {
+                if (pos == limit && !fill()) return -1;
+                return buf[pos++];
+            }
+
+            private int peek() throws IOException {
+                if (pos == limit && !fill()) return -1;
+                return buf[pos];
+            }
+
+            private boolean fill() throws IOException {
+                int n = chars.read(buf, 0, buf.length);
+                if (n <= 0) return false;
+                pos = 0;
+                limit = n;
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                chars.close();
+            }
+        };
+    }
+
+    private static RowReader binaryReader(DataInputStream in) throws IOException {
+        in.readInt(); // magic
+        return new RowReader() {
+            long row;
+            boolean ended;
+
+            @Override
+            public Raw next() throws IOException {
+                if (ended) return null;
+                try {
+                    if (in.readByte() == 0) {
+                        ended = true;
+                        return null;
+                    }
+                    row++;
+                    Object[] f = new Object[10];
+                    f[0] = in.readInt();
+                    for (int i = 1; i <= 6; i++) f[i] = in.readUTF();
+                    f[7] = in.readInt();
+                    f[8] = in.readDouble();
+                    f[9] = in.readDouble();
+                    return new Raw(row, null, f);
+                } catch (EOFException e) {
+                    throw new IOException("File ends inside record " + (row + 1) + " (no end marker)");
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    // ----- export -----
+
+    // Writes the whole fleet to 'file', as CSV unless 'binary'. Returns
+    // the number of buses written.
+    int exportFleet(Path file, boolean binary) throws IOException {
+        Bus[] buses = AdminDashboard.registry.toArray();
+        if (binary) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                out.writeInt(MAGIC);
+                for (Bus bus : buses) {
+                    out.writeByte(1);
+                    out.writeInt(bus.getId());
+                    out.writeUTF(bus.getBusNo());
+                    out.writeUTF(bus.getOperator());
+                    out.writeUTF(bus.getType());
+                    out.writeUTF(bus.getFrom());
+                    out.writeUTF(bus.getTo());
+                    out.writeUTF(bus.getTime());
+                    out.writeInt(bus.getTotalSeats());
+                    out.writeDouble(bus.getDistanceKm());
+                    out.writeDouble(bus.getPricePerKm());
+                }
+                out.writeByte(0);
+            }
+        } else {
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write(CSV_HEADER);
+                out.write('\n');
+                StringBuilder sb = new StringBuilder(128);
+                for (Bus bus : buses) {
+                    sb.setLength(0);
+                    sb.append(bus.getId());
+                    csv(sb.append(','), bus.getBusNo());
+                    csv(sb.append(','), bus.getOperator());
+                    csv(sb.append(','), bus.getType());
+                    csv(sb.append(','), bus.getFrom());
+                    csv(sb.append(','), bus.getTo());
+                    csv(sb.append(','), bus.getTime());
+                    sb.append(',').append(bus.getTotalSeats())
+                            .append(',').append(bus.getDistanceKm())
+                            .append(',').append(bus.getPricePerKm()).append('\n');
+                    out.append(sb);
+                }
+            }
+        }
+        return buses.length;
+    }
+
+    private static void csv(StringBuilder sb, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,457 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// ============= Journey Planner =============
+// Finds journeys with changes of bus when no direct bus fits. Every bus is
+// one timed connection between two stops, running daily: it leaves at its
+// departure time and arrives after its distance at AVERAGE_SPEED_KMH.
+// Changing buses needs MIN_TRANSFER_MINUTES at the stop.
+//
+// Connections live in a timetable of parallel arrays sorted by departure
+// minute, so a query is one forward scan over plain arrays (connection
+// scan), repeated for each day of the horizon with the times shifted:
+//  - earliest arrival keeps the earliest time each stop can be reached
+//    and stops scanning once departures are later than the best arrival
+//    at the destination;
+//  - cheapest fare keeps the cheapest cost per stop and number of legs.
+//    An arrival only becomes usable for boarding once its transfer time
+//    has passed, so arrivals wait in a heap ordered by that time.
+// Only buses with enough free seats on the day are used.
+//
+// Fleet changes only queue the bus id. The next query takes the queued
+// buses out of the timetable and merges their new connections back in,
+// one linear pass, and publishes the result as a new immutable timetable.
+class JourneyPlanner {
+    static final int MIN_TRANSFER_MINUTES = 15;
+    static final int MAX_LEGS = 3;
+    static final int HORIZON_DAYS = 2;
+    static final double AVERAGE_SPEED_KMH = 50;
+    private static final int DAY = 24 * 60;
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    // One bus of a journey. Times are minutes after midnight of 'date';
+    // an arrival past 1440 is on a later day.
+    static final class Leg {
+        final Bus bus;
+        final LocalDate date;
+        final int departs;
+        final int arrives;
+
+        Leg(Bus bus, LocalDate date, int departs, int arrives) {
+            this.bus = bus;
+            this.date = date;
+            this.departs = departs;
+            this.arrives = arrives;
+        }
+
+        @Override
+        public String toString() {
+            return date.format(Booking.DATE_FORMAT) + " " + clock(departs) + " " + bus.getFrom()
+                    + " → " + clock(arrives) + " " + bus.getTo() + "  (Bus " + bus.getId() + ", "
+                    + bus.getOperator() + ", Rs." + String.format("%.2f", FareEngine.perSeat(bus, FareCategory.ADULT)) + ")";
+        }
+    }
+
+    static final class Journey {
+        final List<Leg> legs;
+        final double fare; // adult fare per seat, all legs
+
+        Journey(List<Leg> legs, double fare) {
+            this.legs = legs;
+            this.fare = fare;
+        }
+
+        int getTransfers() {
+            return legs.size() - 1;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Leg leg : legs) sb.append("  ").append(leg).append('\n');
+            return sb.append("  ").append(getTransfers()).append(" change(s), Rs.")
+                    .append(String.format("%.2f", fare)).append(" per adult seat").toString();
+        }
+    }
+
+    // Immutable, sorted by departure minute
+    private static final class Timetable {
+        final int[] departs;
+        final int[] arrives; // may run past midnight
+        final int[] fromStop;
+        final int[] toStop;
+        final double[] fares;
+        final int[] busIds;
+        final Bus[] buses;
+        final int size;
+        final int stops;
+
+        Timetable(int capacity, int stops) {
+            departs = new int[capacity];
+            arrives = new int[capacity];
+            fromStop = new int[capacity];
+            toStop = new int[capacity];
+            fares = new double[capacity];
+            busIds = new int[capacity];
+            buses = new Bus[capacity];
+            this.stops = stops;
+            this.size = capacity;
+        }
+
+        // Copies 'length' connections from 'source' starting at 'from'
+        void copy(int to, Timetable source, int from, int length) {
+            System.arraycopy(source.departs, from, departs, to, length);
+            System.arraycopy(source.arrives, from, arrives, to, length);
+            System.arraycopy(source.fromStop, from, fromStop, to, length);
+            System.arraycopy(source.toStop, from, toStop, to, length);
+            System.arraycopy(source.fares, from, fares, to, length);
+            System.arraycopy(source.busIds, from, busIds, to, length);
+            System.arraycopy(source.buses, from, buses, to, length);
+        }
+
+        // First connection leaving at or after 'minute'
+        int firstAfter(int minute) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (departs[mid] < minute) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+
+    private final BusRegistry registry;
+    private final ConcurrentHashMap<String, Integer> stopIds = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> changed = new ConcurrentLinkedQueue<>();
+    private volatile Timetable timetable = new Timetable(0, 0);
+
+    JourneyPlanner(BusRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Called by the registry whenever a bus is added, edited or removed
+    void busChanged(int busId) {
+        changed.add(busId);
+    }
+
+    // ----- queries -----
+
+    // The journey reaching 'to' soonest, leaving 'from' no earlier than
+    // 'after' minutes into 'date', for 'seats' passengers. Null if there
+    // is none within the horizon.
+    Journey earliestArrival(String from, String to, LocalDate date, int after, int seats) {
+        Timetable t = refresh();
+        int source = stop(from), target = stop(to);
+        if (source < 0 || target < 0 || source == target || source >= t.stops || target >= t.stops) return null;
+
+        int[] ready = new int[t.stops];    // when a bus can be boarded at a stop
+        int[] arrival = new int[t.stops];  // when the stop is reached
+        int[] via = new int[t.stops];      // connection reaching it
+        int[] viaDay = new int[t.stops];
+        Arrays.fill(ready, NEVER);
+        Arrays.fill(arrival, NEVER);
+        ready[source] = after;
+        arrival[source] = after;
+        Availability seatsFree = new Availability(date, seats);
+
+        scan:
+        for (int day = 0; day < HORIZON_DAYS; day++) {
+            int offset = day * DAY;
+            for (int i = day == 0 ? t.firstAfter(after) : 0; i < t.size; i++) {
+                int departs = t.departs[i] + offset;
+                if (departs >= arrival[target]) break scan;
+                int stop = t.fromStop[i];
+                if (ready[stop] > departs) continue;
+                int next = t.toStop[i];
+                int arrives = t.arrives[i] + offset;
+                if (arrives >= arrival[next] || !seatsFree.on(t.buses[i], day)) continue;
+                arrival[next] = arrives;
+                ready[next] = arrives + MIN_TRANSFER_MINUTES;
+                via[next] = i;
+                viaDay[next] = day;
+            }
+        }
+        if (arrival[target] == NEVER) return null;
+
+        List<Leg> legs = new ArrayList<>();
+        double fare = 0;
+        for (int stop = target; stop != source; stop = t.fromStop[via[stop]]) {
+            int i = via[stop];
+            legs.add(new Leg(t.buses[i], date.plusDays(viaDay[stop]), t.departs[i], t.arrives[i]));
+            fare += t.fares[i];
+        }
+        Collections.reverse(legs);
+        return new Journey(legs, fare);
+    }
+
+    // The cheapest journey from 'from' to 'to' with at most MAX_LEGS buses,
+    // leaving no earlier than 'after' minutes into 'date'. Among equally
+    // cheap journeys the one leaving first wins. Null if there is none.
+    Journey cheapest(String from, String to, LocalDate date, int after, int seats) {
+        Timetable t = refresh();
+        int source = stop(from), target = stop(to);
+        if (source < 0 || target < 0 || source == target || source >= t.stops || target >= t.stops) return null;
+
+        int n = t.stops;
+        // Cheapest boardable cost at each stop after each number of legs
+        double[] cost = new double[MAX_LEGS * n];
+        int[] costLabel = new int[MAX_LEGS * n];
+        // Cheapest arrival created so far, to drop labels it dominates
+        double[] seenCost = new double[MAX_LEGS * n];
+        int[] seenReady = new int[MAX_LEGS * n];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(seenCost, Double.POSITIVE_INFINITY);
+        cost[source] = 0;
+        costLabel[source] = -1;
+
+        Labels labels = new Labels();
+        double best = Double.POSITIVE_INFINITY;
+        int bestLabel = -1;
+        Availability seatsFree = new Availability(date, seats);
+
+        for (int day = 0; day < HORIZON_DAYS; day++) {
+            int offset = day * DAY;
+            for (int i = day == 0 ? t.firstAfter(after) : 0; i < t.size; i++) {
+                int departs = t.departs[i] + offset;
+                labels.activate(departs, cost, costLabel, n);
+
+                int stop = t.fromStop[i];
+                double cheapestBoarding = Double.POSITIVE_INFINITY;
+                int free = 0; // 1 if the bus has the seats, -1 if not, 0 not checked yet
+                for (int legs = 0; legs < MAX_LEGS; legs++) {
+                    double c = cost[legs * n + stop];
+                    // More legs for no less money is never better
+                    if (c >= cheapestBoarding) continue;
+                    cheapestBoarding = c;
+                    double total = c + t.fares[i];
+                    if (total >= best) continue;
+                    if (free == 0) free = seatsFree.on(t.buses[i], day) ? 1 : -1;
+                    if (free < 0) break;
+
+                    int next = t.toStop[i];
+                    int arrives = t.arrives[i] + offset;
+                    int previous = costLabel[legs * n + stop];
+                    if (next == target) {
+                        best = total;
+                        bestLabel = labels.add(next, legs + 1, arrives, total, i, day, previous);
+                        continue;
+                    }
+                    if (legs + 1 == MAX_LEGS) continue;
+                    int slot = (legs + 1) * n + next;
+                    int ready = arrives + MIN_TRANSFER_MINUTES;
+                    if (seenCost[slot] <= total && seenReady[slot] <= ready) continue;
+                    if (total < seenCost[slot]) {
+                        seenCost[slot] = total;
+                        seenReady[slot] = ready;
+                    }
+                    labels.push(labels.add(next, legs + 1, ready, total, i, day, previous));
+                }
+            }
+        }
+        if (bestLabel < 0) return null;
+
+        List<Leg> legs = new ArrayList<>();
+        for (int label = bestLabel; label >= 0; label = labels.previous[label]) {
+            int i = labels.connection[label];
+            legs.add(new Leg(t.buses[i], date.plusDays(labels.day[label]), t.departs[i], t.arrives[i]));
+        }
+        Collections.reverse(legs);
+        return new Journey(legs, best);
+    }
+
+    // Arrivals found by the cheapest-fare scan, with a min-heap on the
+    // time each becomes boardable
+    private static final class Labels {
+        int[] stop = new int[256], legs = new int[256], ready = new int[256];
+        int[] connection = new int[256], day = new int[256], previous = new int[256];
+        double[] cost = new double[256];
+        int size;
+        int[] heap = new int[256];
+        int heapSize;
+
+        int add(int at, int legCount, int readyAt, double total, int conn, int onDay, int prev) {
+            if (size == stop.length) {
+                int grown = size * 2;
+                stop = Arrays.copyOf(stop, grown);
+                legs = Arrays.copyOf(legs, grown);
+                ready = Arrays.copyOf(ready, grown);
+                connection = Arrays.copyOf(connection, grown);
+                day = Arrays.copyOf(day, grown);
+                previous = Arrays.copyOf(previous, grown);
+                cost = Arrays.copyOf(cost, grown);
+            }
+            stop[size] = at;
+            legs[size] = legCount;
+            ready[size] = readyAt;
+            cost[size] = total;
+            connection[size] = conn;
+            day[size] = onDay;
+            previous[size] = prev;
+            return size++;
+        }
+
+        void push(int label) {
+            if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (ready[heap[parent]] <= ready[label]) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = label;
+        }
+
+        // Makes every arrival boardable by 'minute' available for boarding
+        void activate(int minute, double[] best, int[] bestLabel, int stops) {
+            while (heapSize > 0 && ready[heap[0]] <= minute) {
+                int label = heap[0];
+                int last = heap[--heapSize];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= heapSize) break;
+                    if (child + 1 < heapSize && ready[heap[child + 1]] < ready[heap[child]]) child++;
+                    if (ready[last] <= ready[heap[child]]) break;
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                if (heapSize > 0) heap[i] = last;
+
+                int slot = legs[label] * stops + stop[label];
+                if (cost[label] < best[slot]) {
+                    best[slot] = cost[label];
+                    bestLabel[slot] = label;
+                }
+            }
+        }
+    }
+
+    // Seat checks for the days of the horizon
+    private static final class Availability {
+        final LocalDate[] dates = new LocalDate[HORIZON_DAYS];
+        final int seats;
+
+        Availability(LocalDate date, int seats) {
+            for (int d = 0; d < HORIZON_DAYS; d++) dates[d] = date.plusDays(d);
+            this.seats = seats;
+        }
+
+        boolean on(Bus bus, int day) {
+            return bus.getAvailableSeats(dates[day]) >= seats;
+        }
+    }
+
+    // ----- timetable upkeep -----
+
+    private int stop(String name) {
+        Integer id = stopIds.get(RouteIndex.normalize(name));
+        return id == null ? -1 : id;
+    }
+
+    private int stopOrAdd(String name) {
+        return stopIds.computeIfAbsent(RouteIndex.normalize(name), k -> stopIds.size());
+    }
+
+    // Applies queued fleet changes, if any, and returns the current timetable
+    private Timetable refresh() {
+        if (changed.isEmpty()) return timetable;
+        synchronized (this) {
+            Set<Integer> queued = new HashSet<>();
+            Integer id;
+            while ((id = changed.poll()) != null) queued.add(id);
+            if (queued.isEmpty()) return timetable;
+            int[] ids = new int[queued.size()];
+            int n = 0;
+            for (int busId : queued) ids[n++] = busId;
+            Arrays.sort(ids);
+
+            // The changed buses' connections as they are now
+            List<Bus> current = new ArrayList<>();
+            for (int busId : ids) {
+                Bus bus = registry.get(busId);
+                if (bus != null && departure(bus) >= 0 && !RouteIndex.normalize(bus.getFrom())
+                        .equals(RouteIndex.normalize(bus.getTo()))) {
+                    current.add(bus);
+                }
+            }
+            // Sort by departure, packed as departure << 32 | index
+            long[] keys = new long[current.size()];
+            for (int k = 0; k < keys.length; k++) keys[k] = ((long) departure(current.get(k)) << 32) | k;
+            Arrays.sort(keys);
+            Timetable added = new Timetable(current.size(), 0);
+            for (int k = 0; k < keys.length; k++) {
+                Bus bus = current.get((int) keys[k]);
+                added.departs[k] = (int) (keys[k] >>> 32);
+                added.arrives[k] = added.departs[k] + duration(bus);
+                added.fromStop[k] = stopOrAdd(bus.getFrom());
+                added.toStop[k] = stopOrAdd(bus.getTo());
+                added.fares[k] = FareEngine.perSeat(bus, FareCategory.ADULT);
+                added.busIds[k] = bus.getId();
+                added.buses[k] = bus;
+            }
+
+            // Positions of the changed buses' old connections
+            Timetable old = timetable;
+            int[] dropped = new int[Math.min(ids.length, old.size) + 1];
+            int drops = 0;
+            for (int i = 0; i < old.size; i++) {
+                if (Arrays.binarySearch(ids, old.busIds[i]) >= 0) dropped[drops++] = i;
+            }
+            dropped[drops] = old.size; // sentinel
+
+            // Merge: runs of kept old connections are bulk-copied, with each
+            // new connection placed after the old ones leaving no later
+            Timetable merged = new Timetable(old.size - drops + added.size, stopIds.size());
+            int i = 0, out = 0, d = 0;
+            for (int k = 0; k <= added.size; k++) {
+                int end = k < added.size ? old.firstAfter(added.departs[k] + 1) : old.size;
+                while (i < end) {
+                    while (d < drops && dropped[d] < i) d++;
+                    int runEnd = Math.min(end, dropped[d]);
+                    merged.copy(out, old, i, runEnd - i);
+                    out += runEnd - i;
+                    i = runEnd == dropped[d] ? runEnd + 1 : runEnd;
+                }
+                if (k < added.size) merged.copy(out++, added, k, 1);
+            }
+            timetable = merged;
+            return merged;
+        }
+    }
+
+    // Minutes after midnight the bus leaves, or -1 if its time is unreadable
+    static int departure(Bus bus) {
+        return bus.getDepartureMinutes();
+    }
+
+    // Minutes after midnight of an HH:mm time, or -1 if it is unreadable
+    static int departure(String time) {
+        try {
+            LocalTime parsed = LocalTime.parse(time);
+            return parsed.getHour() * 60 + parsed.getMinute();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    static int duration(Bus bus) {
+        return Math.max(1, (int) Math.ceil(bus.getDistanceKm() / AVERAGE_SPEED_KMH * 60));
+    }
+
+    static String clock(int minutes) {
+        int days = minutes / DAY;
+        int m = minutes % DAY;
+        return String.format("%02d:%02d", m / 60, m % 60) + (days > 0 ? " (+" + days + "d)" : "");
+    }
+}
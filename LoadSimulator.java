@@ -0,0 +1,348 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+// ============= Load Simulator =============
+// Drives BookingService with thousands of synthetic passengers, one
+// virtual thread each, against a generated fleet held in memory only (the
+// journal is never opened). Each passenger performs a fixed number of
+// operations drawn from a workload mix; the route for each operation is
+// drawn from a Zipf distribution over route popularity, so a few routes
+// get most of the traffic. Every passenger's choices come from its own
+// random stream split from one seed, so a run can be repeated exactly,
+// apart from how the threads interleave.
+//
+// Afterwards every bus is checked for overselling: a seat held by two live
+// bookings, or a booked seat the seat map shows as free.
+//
+//   java BusBookingSystem --simulate mix=rush passengers=5000 ops=10 seed=42
+class LoadSimulator {
+    static final int BUSES_PER_ROUTE = 5;
+
+    enum Mix {
+        //            search journey book cancel  everyone on the top route
+        SEARCH(        70,    10,    15,    5,    false),
+        BOOKING(       20,     0,    70,   10,    false),
+        CANCEL_STORM(  10,     0,    30,   60,    false),
+        RUSH(           5,     0,    90,    5,    true);
+
+        final int search, journey, book, cancel;
+        final boolean hotRoute;
+
+        Mix(int search, int journey, int book, int cancel, boolean hotRoute) {
+            this.search = search;
+            this.journey = journey;
+            this.book = book;
+            this.cancel = cancel;
+            this.hotRoute = hotRoute;
+        }
+    }
+
+    // Simulation settings, read from key=value arguments
+    static final class Config {
+        Mix mix = Mix.BOOKING;
+        int passengers = 5000;
+        int ops = 10;         // per passenger
+        long seed = 42;
+        int buses = 2000;
+        int cities = 100;
+        int seats = 40;
+        double zipf = 1.1;    // skew of route popularity; 0 is uniform
+        int daysAhead = 7;    // journey date, days from today
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) throw new IllegalArgumentException("Expected key=value, got " + arg);
+                String key = arg.substring(0, eq), value = arg.substring(eq + 1);
+                switch (key) {
+                    case "mix": config.mix = Mix.valueOf(value.toUpperCase().replace('-', '_')); break;
+                    case "passengers": config.passengers = Integer.parseInt(value); break;
+                    case "ops": config.ops = Integer.parseInt(value); break;
+                    case "seed": config.seed = Long.parseLong(value); break;
+                    case "buses": config.buses = Integer.parseInt(value); break;
+                    case "cities": config.cities = Integer.parseInt(value); break;
+                    case "seats": config.seats = Integer.parseInt(value); break;
+                    case "zipf": config.zipf = Double.parseDouble(value); break;
+                    case "days": config.daysAhead = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown setting " + key);
+                }
+            }
+            if (config.cities < 2 || config.buses < 1 || config.passengers < 1) {
+                throw new IllegalArgumentException("Need at least 2 cities, 1 bus and 1 passenger");
+            }
+            return config;
+        }
+
+        @Override
+        public String toString() {
+            return "mix=" + mix + " passengers=" + passengers + " ops=" + ops + " seed=" + seed + " buses=" + buses
+                    + " cities=" + cities + " seats=" + seats + " zipf=" + zipf + " days=" + daysAhead;
+        }
+    }
+
+    // Draws ranks 0..n-1 with probability proportional to 1 / (rank + 1)^s
+    static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double s) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, s);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) cumulative[i] /= sum;
+        }
+
+        int next(SplittableRandom random) {
+            double u = random.nextDouble();
+            int low = 0, high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < u) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+
+    private final Config config;
+    private final BookingService service = new BookingService();
+    private final LocalDate date;
+    private String[][] routes; // by popularity: {from, to}
+    private Zipf popularity;
+
+    private final Metrics.Histogram[] latency = new Metrics.Histogram[Metrics.Op.ALL.length];
+    private final LongAdder bookingAttempts = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder seatsBooked = new LongAdder();
+    private final LongAdder seatConflicts = new LongAdder();
+    private final LongAdder soldOut = new LongAdder();
+    private final LongAdder paymentFailures = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+
+    LoadSimulator(Config config) {
+        this.config = config;
+        this.date = LocalDate.now().plusDays(config.daysAhead);
+        for (int i = 0; i < latency.length; i++) latency[i] = new Metrics.Histogram();
+    }
+
+    // Replaces the shared fleet and bookings with a generated fleet. Buses
+    // are dealt round-robin over the routes, BUSES_PER_ROUTE to a route.
+    void setUp() throws InvalidBusException {
+        AdminDashboard.registry = new BusRegistry();
+        AdminDashboard.bookings = new BookingStore();
+        AdminDashboard.refunds = new RefundLedger();
+        AdminDashboard.analytics = new Analytics();
+
+        SplittableRandom random = new SplittableRandom(config.seed);
+        int routeCount = Math.max(1, Math.min(config.buses / BUSES_PER_ROUTE, config.cities * (config.cities - 1)));
+        routes = new String[routeCount][];
+        for (int r = 0; r < routeCount; r++) {
+            // Ordered city pairs in a fixed shuffled-looking order
+            int pair = (int) ((r * 7919L) % (config.cities * (config.cities - 1)));
+            int from = pair / (config.cities - 1), to = pair % (config.cities - 1);
+            if (to >= from) to++;
+            routes[r] = new String[] {city(from), city(to)};
+        }
+        popularity = new Zipf(routeCount, config.zipf);
+
+        for (int id = 1; id <= config.buses; id++) {
+            String[] route = routes[(id - 1) % routeCount];
+            String time = String.format("%02d:%02d", random.nextInt(24), random.nextInt(4) * 15);
+            AdminDashboard.registry.add(new Bus(id, "SIM" + id, "Operator " + (id % 20), id % 2 == 0 ? "AC" : "Sleeper",
+                    route[0], route[1], time, config.seats, 100 + random.nextInt(900), 1.5 + random.nextInt(3) * 0.5));
+        }
+    }
+
+    private static String city(int i) {
+        return String.format("City-%03d", i);
+    }
+
+    // Runs every passenger to completion and prints the report
+    void run() throws InterruptedException {
+        System.out.println("Simulating: " + config);
+        System.out.println("Journey date " + date + ", payment gateway latency ~"
+                + BusBookingSystem.GATEWAY_LATENCY_MS + " ms");
+
+        SplittableRandom seeds = new SplittableRandom(config.seed);
+        List<SplittableRandom> streams = new ArrayList<>(config.passengers);
+        for (int p = 0; p < config.passengers; p++) streams.add(seeds.split());
+
+        // Cancellations print to the console; keep them out of the report
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long start = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int p = 0; p < config.passengers; p++) {
+                int passenger = p;
+                SplittableRandom random = streams.get(p);
+                threads.submit(() -> passenger(passenger, random));
+            }
+        } finally { // waits for every passenger
+            System.setOut(console);
+        }
+        long elapsed = System.nanoTime() - start;
+        report(elapsed);
+    }
+
+    // ----- one passenger -----
+
+    private void passenger(int passenger, SplittableRandom random) {
+        String contact = String.format("9%09d", passenger);
+        List<Integer> ownBookings = new ArrayList<>();
+        int total = config.mix.search + config.mix.journey + config.mix.book + config.mix.cancel;
+        for (int op = 0; op < config.ops; op++) {
+            String[] route = routes[config.mix.hotRoute ? 0 : popularity.next(random)];
+            int pick = random.nextInt(total);
+            if ((pick -= config.mix.search) < 0) {
+                timed(Metrics.Op.SEARCH, () -> service.searchRoute(route[0], route[1]) != null);
+            } else if ((pick -= config.mix.journey) < 0) {
+                String to = routes[popularity.next(random)][1];
+                int after = random.nextInt(24 * 60);
+                timed(Metrics.Op.JOURNEY, () -> {
+                    service.planEarliest(route[0], to, date, after, 1);
+                    return true;
+                });
+            } else if ((pick -= config.mix.book) < 0 || ownBookings.isEmpty()) {
+                book(passenger, contact, route, random, ownBookings);
+            } else {
+                int bookingId = ownBookings.remove(random.nextInt(ownBookings.size()));
+                boolean cancelled = timed(Metrics.Op.CANCELLATION, () -> service.cancelBooking(bookingId, 48) != null);
+                if (cancelled) cancellations.increment();
+            }
+        }
+    }
+
+    // Books 1-4 seats on a bus of the route that the search shows has room
+    // (the first such bus in a rush). Half the passengers ask for
+    // particular seats, and fall back to any seats together if those are
+    // gone; the rest ask for seats together straight away.
+    private void book(int passenger, String contact, String[] route, SplittableRandom random, List<Integer> ownBookings) {
+        int party = 1 + Math.min(3, (int) (-Math.log(1 - random.nextDouble()) * 0.8));
+        List<Bus> withRoom = new ArrayList<>();
+        for (Bus bus : service.searchRoute(route[0], route[1])) {
+            if (bus.getAvailableSeats(date) >= party) withRoom.add(bus);
+        }
+        if (withRoom.isEmpty()) {
+            soldOut.increment();
+            return;
+        }
+        Bus bus = config.mix.hotRoute ? withRoom.get(0) : withRoom.get(random.nextInt(withRoom.size()));
+        String name = "Passenger " + passenger;
+
+        BookingRequest request;
+        if (random.nextBoolean()) {
+            int[] wanted = new int[party];
+            int first = 1 + random.nextInt(Math.max(1, bus.getTotalSeats() - party + 1));
+            for (int i = 0; i < party; i++) wanted[i] = first + i;
+            request = new BookingRequest(name, "M", 30, contact, bus.getId(), wanted, date, "UPI");
+        } else {
+            request = new BookingRequest(name, "F", 30, contact, bus.getId(), party, date, "UPI");
+        }
+
+        BookingResult result = bookOnce(request);
+        if (result.status == BookingResult.Status.SEATS_UNAVAILABLE && request.seatNumbers != null) {
+            result = bookOnce(new BookingRequest(name, "M", 30, contact, bus.getId(), party, date, "UPI"));
+        }
+        if (result.isConfirmed()) {
+            confirmed.increment();
+            seatsBooked.add(result.booking.getSeatNumbers().length);
+            ownBookings.add(result.booking.getBookingId());
+        }
+    }
+
+    private BookingResult bookOnce(BookingRequest request) {
+        bookingAttempts.increment();
+        long start = System.nanoTime();
+        BookingResult result = service.book(request);
+        latency[Metrics.Op.BOOKING.ordinal()].record(System.nanoTime() - start);
+        if (result.status == BookingResult.Status.SEATS_UNAVAILABLE) seatConflicts.increment();
+        if (result.status == BookingResult.Status.PAYMENT_FAILED) paymentFailures.increment();
+        return result;
+    }
+
+    private interface Call {
+        boolean run();
+    }
+
+    private boolean timed(Metrics.Op op, Call call) {
+        long start = System.nanoTime();
+        boolean ok = call.run();
+        latency[op.ordinal()].record(System.nanoTime() - start);
+        return ok;
+    }
+
+    // ----- results -----
+
+    // Seats oversold across the fleet on the journey date: seats claimed by
+    // more than one live booking, plus live bookings' seats the seat map
+    // shows as free (anyone could book them again)
+    int countOversold() {
+        int oversold = 0;
+        for (Bus bus : AdminDashboard.registry.toArray()) {
+            boolean[] owned = new boolean[bus.getTotalSeats() + 1];
+            int total = AdminDashboard.bookings.countByBusDate(bus.getId(), date);
+            for (int offset = 0; offset < total; offset += MassCancellation.CHUNK) {
+                for (Booking booking : AdminDashboard.bookings.findByBusDate(bus.getId(), date, offset,
+                        MassCancellation.CHUNK)) {
+                    if (booking.isCancelled()) continue;
+                    for (int seat : booking.getSeatNumbers()) {
+                        if (owned[seat]) oversold++;
+                        else if (bus.isSeatAvailable(date, seat)) oversold++;
+                        owned[seat] = true;
+                    }
+                }
+            }
+        }
+        return oversold;
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long ops = 0;
+        for (Metrics.Histogram h : latency) ops += h.getCount();
+        long attempts = bookingAttempts.sum();
+
+        System.out.println("\n=== SIMULATION REPORT ===");
+        System.out.printf("%d operations in %.2f s: %.0f ops/s%n", ops, seconds, ops / seconds);
+        System.out.printf("%-13s %9s %10s %10s %10s %10s%n", "Operation", "Count", "p50 ms", "p99 ms", "p99.9 ms", "Max ms");
+        for (Metrics.Op op : Metrics.Op.ALL) {
+            Metrics.Histogram h = latency[op.ordinal()];
+            if (h.getCount() == 0) continue;
+            System.out.printf("%-13s %9d %10.3f %10.3f %10.3f %10.3f%n", op, h.getCount(), h.percentile(0.5) / 1e6,
+                    h.percentile(0.99) / 1e6, h.percentile(0.999) / 1e6, h.getMax() / 1e6);
+        }
+        System.out.printf("Booking attempts: %d, confirmed %d (%d seats), %.0f bookings/s%n",
+                attempts, confirmed.sum(), seatsBooked.sum(), confirmed.sum() / seconds);
+        System.out.printf("Seat conflicts: %d (%.1f%% of attempts), payment failures: %d, cancellations: %d%n",
+                seatConflicts.sum(), attempts == 0 ? 0 : 100.0 * seatConflicts.sum() / attempts,
+                paymentFailures.sum(), cancellations.sum());
+        System.out.println("Turned away, route sold out: " + soldOut.sum());
+        int oversold = countOversold();
+        System.out.println(oversold == 0 ? "Oversold seats: none" : "✗ OVERSOLD SEATS: " + oversold);
+    }
+
+    // Entry point for --simulate; the remaining arguments are key=value
+    static void simulate(String[] args) {
+        try {
+            LoadSimulator simulator = new LoadSimulator(Config.parse(args));
+            simulator.setUp();
+            simulator.run();
+        } catch (IllegalArgumentException | InvalidBusException e) {
+            System.out.println("✗ " + e.getMessage());
+            System.out.println("Settings: mix=search|booking|cancel-storm|rush passengers= ops= seed= buses= cities= "
+                    + "seats= zipf= days=");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
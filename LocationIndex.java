@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// ============= Location Dictionary =============
+// Every city a bus starts or ends at, in a trie over normalized names (see
+// RouteIndex.normalize). Each node keeps its children in a sorted char
+// array searched by binary search, so a node costs two small arrays rather
+// than a map. A name is counted once per bus endpoint using it and leaves
+// the trie when the last such bus goes.
+//
+//  - complete(prefix) walks to the prefix and lists the names below it in
+//    alphabetical order.
+//  - near(name, maxEdits) walks the trie carrying one row of the
+//    Levenshtein table per level, and abandons a branch as soon as every
+//    entry in its row exceeds maxEdits, so only a thin slice of the trie
+//    is visited.
+class LocationIndex {
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        char[] labels = NO_LABELS; // sorted
+        Node[] children = NO_CHILDREN;
+        int size;
+        String name; // display name, if a location ends here
+        int refs;    // bus endpoints using it
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, 0, size, c);
+            return i < 0 ? null : children[i];
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(labels, 0, size, c);
+            if (i >= 0) return children[i];
+            i = -i - 1;
+            if (size == labels.length) {
+                int grown = Math.max(2, size * 2);
+                labels = Arrays.copyOf(labels, grown);
+                children = Arrays.copyOf(children, grown);
+            }
+            System.arraycopy(labels, i, labels, i + 1, size - i);
+            System.arraycopy(children, i, children, i + 1, size - i);
+            Node node = new Node();
+            labels[i] = c;
+            children[i] = node;
+            size++;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(labels, 0, size, c);
+            if (i < 0) return;
+            System.arraycopy(labels, i + 1, labels, i, size - i - 1);
+            System.arraycopy(children, i + 1, children, i, size - i - 1);
+            children[--size] = null;
+        }
+    }
+
+    // A location and how many edits it is from what was typed
+    static final class Match {
+        final String name;
+        final int distance;
+
+        Match(String name, int distance) {
+            this.name = name;
+            this.distance = distance;
+        }
+    }
+
+    private final Node root = new Node();
+    private int count;
+    private int maxDepth; // longest name ever added
+
+    // Counts one more bus endpoint at 'location'
+    void add(String location) {
+        add(location, 1);
+    }
+
+    // Counts 'times' more bus endpoints at 'location'
+    synchronized void add(String location, int times) {
+        String key = RouteIndex.normalize(location);
+        if (key.isEmpty()) return;
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(i));
+        }
+        maxDepth = Math.max(maxDepth, key.length());
+        if (node.refs == 0) {
+            node.name = location.trim();
+            count++;
+        }
+        node.refs += times;
+    }
+
+    // Counts one bus endpoint fewer at 'location', dropping the name and
+    // any branch left empty once nothing uses it
+    synchronized void remove(String location) {
+        String key = RouteIndex.normalize(location);
+        if (key.isEmpty()) return;
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+            if (path[i + 1] == null) return;
+        }
+        Node node = path[key.length()];
+        if (node.refs == 0 || --node.refs > 0) return;
+        node.name = null;
+        count--;
+        for (int i = key.length(); i > 0 && path[i].size == 0 && path[i].name == null; i--) {
+            path[i - 1].removeChild(key.charAt(i - 1));
+        }
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    // The display name of a known location, or null
+    synchronized String find(String location) {
+        Node node = walk(RouteIndex.normalize(location));
+        return node == null ? null : node.name;
+    }
+
+    // Up to 'limit' locations starting with 'prefix', alphabetically
+    synchronized List<String> complete(String prefix, int limit) {
+        List<String> found = new ArrayList<>();
+        Node node = walk(RouteIndex.normalize(prefix));
+        if (node != null && limit > 0) collect(node, found, limit);
+        return found;
+    }
+
+    private static boolean collect(Node node, List<String> found, int limit) {
+        if (node.name != null) {
+            found.add(node.name);
+            if (found.size() >= limit) return true;
+        }
+        for (int i = 0; i < node.size; i++) {
+            if (collect(node.children[i], found, limit)) return true;
+        }
+        return false;
+    }
+
+    // Up to 'limit' locations within 'maxEdits' insertions, deletions or
+    // substitutions of 'location', closest first
+    synchronized List<Match> near(String location, int maxEdits, int limit) {
+        String key = RouteIndex.normalize(location);
+        // One row per trie level, reused across branches. Only the band of
+        // cells within maxEdits of the diagonal can stay in range; cells
+        // outside it hold maxEdits + 1.
+        int[][] rows = new int[maxDepth + 1][key.length() + 1];
+        for (int i = 0; i <= key.length(); i++) rows[0][i] = Math.min(i, maxEdits + 1);
+
+        List<Match> found = new ArrayList<>();
+        for (int i = 0; i < root.size; i++) {
+            near(root.children[i], root.labels[i], 1, key, rows, maxEdits, found);
+        }
+        found.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance)
+                : a.name.compareToIgnoreCase(b.name));
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    private static void near(Node node, char c, int depth, String key, int[][] rows, int maxEdits,
+                             List<Match> found) {
+        int[] previous = rows[depth - 1];
+        int[] row = rows[depth];
+        int over = maxEdits + 1;
+        int from = Math.max(1, depth - maxEdits);
+        int to = Math.min(key.length(), depth + maxEdits);
+
+        row[0] = Math.min(depth, over);
+        if (from > 1) row[from - 1] = over;
+        int best = row[0];
+        for (int i = from; i <= to; i++) {
+            int substitute = previous[i - 1] + (key.charAt(i - 1) == c ? 0 : 1);
+            int value = Math.min(substitute, Math.min(row[i - 1], previous[i]) + 1);
+            row[i] = Math.min(value, over);
+            best = Math.min(best, row[i]);
+        }
+        if (to < key.length()) row[to + 1] = over;
+
+        int distance = to == key.length() ? row[to] : over;
+        if (node.name != null && distance <= maxEdits) {
+            found.add(new Match(node.name, distance));
+        }
+        if (best > maxEdits) return;
+        for (int i = 0; i < node.size; i++) {
+            near(node.children[i], node.labels[i], depth + 1, key, rows, maxEdits, found);
+        }
+    }
+
+    // What a typed location most likely means: the location itself if
+    // known, else the locations it is a prefix of, else those within a
+    // typo or two (one for short names). At most 'limit', best first.
+    List<String> suggest(String typed, int limit) {
+        if (RouteIndex.normalize(typed).isEmpty()) return List.of();
+        String exact = find(typed);
+        if (exact != null) return List.of(exact);
+        List<String> completions = complete(typed, limit);
+        if (!completions.isEmpty()) return completions;
+
+        // One typo is searched first: it is much cheaper, since the search
+        // widens with every edit allowed, and usually finds the city
+        int length = RouteIndex.normalize(typed).length();
+        if (length < 3) return List.of();
+        List<Match> matches = near(typed, 1, limit);
+        if (matches.isEmpty() && length > 5) matches = near(typed, 2, limit);
+        List<String> names = new ArrayList<>(matches.size());
+        for (Match match : matches) names.add(match.name);
+        return names;
+    }
+
+    private Node walk(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+}
@@ -0,0 +1,123 @@
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// ============= Mass Cancellation =============
+// Cancels and refunds every booking on a bus for a journey date in one
+// operation. Bookings are streamed from the store's bus/date index in
+// chunks. For each chunk:
+//  - every live booking is claimed as cancelled under its own lock, so a
+//    passenger cancelling at the same moment cannot be refunded twice;
+//  - the cancellations, the freed seats and the refunds go to the journal
+//    as one group-committed unit, and the refunds to the ledger as one
+//    batch;
+//  - the chunk's seats are then freed with one bulk release on the date's
+//    seat map, a CAS per word rather than a call per booking.
+// Refunds follow the Cancellable policy, counted from now to departure.
+class MassCancellation {
+    static final int CHUNK = 512;
+
+    // What one mass cancellation did
+    static final class Result {
+        int bookings;
+        int seats;
+        double refunded;
+        long millis;
+
+        void add(Result other) {
+            bookings += other.bookings;
+            seats += other.seats;
+            refunded += other.refunded;
+            millis += other.millis;
+        }
+
+        @Override
+        public String toString() {
+            return bookings + " bookings cancelled, " + seats + " seats freed, Rs."
+                    + String.format("%.2f", refunded) + " refunded in " + millis + " ms";
+        }
+    }
+
+    private final BookingStore bookings;
+    private final RefundLedger ledger;
+
+    MassCancellation(BookingStore bookings, RefundLedger ledger) {
+        this.bookings = bookings;
+        this.ledger = ledger;
+    }
+
+    // Cancels every booking on the bus for one journey date
+    Result cancel(Bus bus, LocalDate date, RefundLedger.Reason reason) {
+        long start = System.nanoTime();
+        Result result = new Result();
+        int hours = hoursUntilDeparture(bus, date);
+        int total = bookings.countByBusDate(bus.getId(), date);
+        for (int offset = 0; offset < total; offset += CHUNK) {
+            cancelChunk(bus, date, bookings.findByBusDate(bus.getId(), date, offset, CHUNK), hours, reason, result);
+        }
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    // Cancels every booking on the bus for any date still to come
+    Result cancelAll(Bus bus, RefundLedger.Reason reason) {
+        Result result = new Result();
+        for (LocalDate date : bus.getInventoryDates()) {
+            result.add(cancel(bus, date, reason));
+        }
+        return result;
+    }
+
+    private void cancelChunk(Bus bus, LocalDate date, List<Booking> chunk, int hours,
+                             RefundLedger.Reason reason, Result result) {
+        List<Booking> cancelled = new ArrayList<>(chunk.size());
+        List<RefundLedger.Entry> refunds = new ArrayList<>(chunk.size());
+        long now = System.currentTimeMillis();
+        int seatCount = 0;
+        for (Booking booking : chunk) {
+            synchronized (booking) {
+                if (booking.isCancelled()) continue;
+                booking.markCancelled();
+            }
+            cancelled.add(booking);
+            refunds.add(new RefundLedger.Entry(booking.getBookingId(), bus.getId(),
+                    booking.calculateRefund(hours), now, reason));
+            seatCount += booking.getSeatNumbers().length;
+        }
+        if (cancelled.isEmpty()) return;
+
+        int[] seats = new int[seatCount];
+        int n = 0;
+        for (Booking booking : cancelled) {
+            int[] own = booking.getSeatNumbers();
+            System.arraycopy(own, 0, seats, n, own.length);
+            n += own.length;
+        }
+
+        // Journal before freeing, as for a single cancellation. If that
+        // fails nothing was recorded or refunded, so the bookings stand.
+        try {
+            ledger.record(refunds, () -> AdminDashboard.journal.logMassCancel(bus, date, cancelled, seats, refunds));
+        } catch (RuntimeException e) {
+            for (Booking booking : cancelled) booking.unmarkCancelled();
+            throw e;
+        }
+        bus.releaseSeats(date, seats);
+
+        result.bookings += cancelled.size();
+        result.seats += seatCount;
+        for (RefundLedger.Entry entry : refunds) result.refunded += entry.amount;
+    }
+
+    // Whole hours from now until the bus leaves on 'date'. A departure time
+    // that cannot be read counts as midnight.
+    static int hoursUntilDeparture(Bus bus, LocalDate date) {
+        int minutes = Math.max(bus.getDepartureMinutes(), 0);
+        LocalTime departure = LocalTime.of(minutes / 60, minutes % 60);
+        long hours = Duration.between(LocalDateTime.now(), date.atTime(departure)).toHours();
+        return (int) Math.max(Math.min(hours, Integer.MAX_VALUE), Integer.MIN_VALUE);
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// ============= Metrics =============
+// Latency and outcome of every search, journey query, booking, booking
+// batch, cancellation and payment, plus a count of seat conflicts (a seat taken
+// by someone else first). Recording is lock-free:
+//  - each operation has a histogram of log-scaled buckets, as in HDR
+//    histograms: values up to 32 ns get a bucket each, and above that
+//    every power of two is split into 32 equal buckets, so a percentile
+//    is read back within about 3% at any scale;
+//  - a bucket is one slot of an AtomicLongArray; totals and failures are
+//    LongAdders, which spread contended increments across cells.
+// When a JFR recording is running, operations slower than
+// SLOW_OPERATION_MICROS and every seat conflict are also committed as JFR
+// events (busbooking.Operation and busbooking.SeatConflict), for lining up
+// tail latency with GC pauses and lock contention. Fast operations stay
+// out of the recording: committing one costs more than the operation.
+final class Metrics {
+    enum Op {
+        SEARCH, JOURNEY, BOOKING, CANCELLATION, PAYMENT,
+        BATCH_BOOKING; // one sample per bookBatch call, failed if nothing in it was booked
+
+        static final Op[] ALL = values();
+    }
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    // Latencies of one operation, in nanoseconds
+    static final class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            counts.incrementAndGet(bucket(nanos));
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) total.sum() / n;
+        }
+
+        // The latency 'quantile' (0..1) of recordings fall at or under: the
+        // top of the bucket holding that rank, never above the maximum
+        long percentile(double quantile) {
+            long[] snapshot = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                n += snapshot[i];
+            }
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return Math.min(highest(i), getMax());
+            }
+            return getMax();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+            count.reset();
+            total.reset();
+            max.reset();
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BITS;
+            return ((shift + 1) << SUB_BITS) | (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        // Largest value that falls in bucket 'i'
+        static long highest(int i) {
+            if (i < SUB_BUCKETS) return i;
+            int shift = (i >>> SUB_BITS) - 1;
+            long lowest = (long) (SUB_BUCKETS | (i & (SUB_BUCKETS - 1))) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+    }
+
+    @Name("busbooking.Operation")
+    @Label("Slow Booking Operation")
+    @Category("Bus Booking")
+    @StackTrace(false)
+    static final class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("busbooking.SeatConflict")
+    @Label("Seat Conflict")
+    @Category("Bus Booking")
+    static final class SeatConflictEvent extends Event {
+        @Label("Bus ID")
+        int busId;
+    }
+
+    private static final EventType OPERATION_EVENT = EventType.getEventType(OperationEvent.class);
+    private static final EventType CONFLICT_EVENT = EventType.getEventType(SeatConflictEvent.class);
+
+    private static final Histogram[] LATENCY = new Histogram[Op.ALL.length];
+    private static final LongAdder[] FAILURES = new LongAdder[Op.ALL.length];
+    private static final LongAdder SEAT_CONFLICTS = new LongAdder();
+    private static final long SLOW_NANOS = BusBookingSystem.SLOW_OPERATION_MICROS * 1000;
+    private static volatile long since = System.currentTimeMillis();
+
+    static {
+        for (int i = 0; i < Op.ALL.length; i++) {
+            LATENCY[i] = new Histogram();
+            FAILURES[i] = new LongAdder();
+        }
+    }
+
+    private Metrics() {}
+
+    // Records an operation begun at 'startNanos' (System.nanoTime())
+    static void record(Op op, long startNanos, boolean succeeded) {
+        long nanos = System.nanoTime() - startNanos;
+        LATENCY[op.ordinal()].record(nanos);
+        if (!succeeded) FAILURES[op.ordinal()].increment();
+        if (nanos >= SLOW_NANOS && OPERATION_EVENT.isEnabled()) {
+            OperationEvent event = new OperationEvent();
+            event.operation = op.name();
+            event.succeeded = succeeded;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    // Counts a seat the booker wanted that someone else had already taken
+    static void seatConflict(int busId) {
+        SEAT_CONFLICTS.increment();
+        if (CONFLICT_EVENT.isEnabled()) {
+            SeatConflictEvent event = new SeatConflictEvent();
+            event.busId = busId;
+            event.commit();
+        }
+    }
+
+    static Histogram latency(Op op) {
+        return LATENCY[op.ordinal()];
+    }
+
+    static long failures(Op op) {
+        return FAILURES[op.ordinal()].sum();
+    }
+
+    static long seatConflicts() {
+        return SEAT_CONFLICTS.sum();
+    }
+
+    // Starts counting afresh, e.g. before a rush
+    static void reset() {
+        for (int i = 0; i < Op.ALL.length; i++) {
+            LATENCY[i].reset();
+            FAILURES[i].reset();
+        }
+        SEAT_CONFLICTS.reset();
+        since = System.currentTimeMillis();
+    }
+
+    // ----- reports -----
+
+    // A table for the console, latencies in microseconds
+    static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-13s %9s %8s %10s %10s %10s %10s %10s%n",
+                "Operation", "Count", "Failed", "Mean us", "p50 us", "p99 us", "p99.9 us", "Max us"));
+        for (Op op : Op.ALL) {
+            Histogram h = latency(op);
+            sb.append(String.format("%-13s %9d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    op, h.getCount(), failures(op), h.getMean() / 1000, h.percentile(0.5) / 1000.0,
+                    h.percentile(0.99) / 1000.0, h.percentile(0.999) / 1000.0, h.getMax() / 1000.0));
+        }
+        sb.append("Seat conflicts: ").append(seatConflicts());
+        return sb.toString();
+    }
+
+    // The same figures as JSON, latencies in nanoseconds
+    static StringBuilder toJson(StringBuilder sb) {
+        sb.append("{\"since\":").append(since).append(",\"seatConflicts\":").append(seatConflicts())
+                .append(",\"operations\":{");
+        for (Op op : Op.ALL) {
+            Histogram h = latency(op);
+            if (op.ordinal() > 0) sb.append(',');
+            sb.append('"').append(op.name().toLowerCase()).append("\":{")
+                    .append("\"count\":").append(h.getCount())
+                    .append(",\"failed\":").append(failures(op))
+                    .append(",\"meanNanos\":").append(Math.round(h.getMean()))
+                    .append(",\"p50Nanos\":").append(h.percentile(0.5))
+                    .append(",\"p99Nanos\":").append(h.percentile(0.99))
+                    .append(",\"p999Nanos\":").append(h.percentile(0.999))
+                    .append(",\"maxNanos\":").append(h.getMax())
+                    .append('}');
+        }
+        return sb.append("}}");
+    }
+}
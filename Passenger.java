@@ -1,57 +1,121 @@
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Scanner;
 
 class Passenger extends User {
+    private static final int PAGE_SIZE = 10;
     private String phone;
-    private Booking[] myBookings;
-    private int myBookingsCount;
-    Scanner sc = new Scanner(System.in);
+    Scanner sc = BusBookingSystem.CONSOLE;
+    private BookingService service = new BookingService();
     
     public Passenger() {
-        myBookings = new Booking[0]; // No initial capacity
-        myBookingsCount = 0;
     }
 
     public Passenger(int id, String name, String email, String phone) {
         super(id, name, email);
         this.phone = phone;
-        myBookings = new Booking[0]; // No initial capacity
-        myBookingsCount = 0;
     }
     
     void searchBus() {
-        System.out.print("Enter From Location: ");
-        String from = sc.next();
-        System.out.print("Enter To Location: ");
-        String to = sc.next();
+        String from = readLocation("Enter From Location: ");
+        String to = readLocation("Enter To Location: ");
         System.out.println("\nSearching buses from " + from + " to " + to + "...\n");
         
-        boolean found = false;
-        for (int i = 0; i < AdminDashboard.busCount; i++) {
-            if (AdminDashboard.buses[i].from.equalsIgnoreCase(from) && 
-                AdminDashboard.buses[i].to.equalsIgnoreCase(to)) {
-                AdminDashboard.buses[i].show();
-                found = true;
-            }
-        }
+        SearchCache.Result matches = service.showRoute(from, to);
+        matches.print(System.out);
         
-        if (!found) {
+        if (matches.isEmpty()) {
             System.out.println("================================");
             System.out.println("No buses found for the given route.");
             System.out.println("================================");
+            showConnections(from, to);
         }
     }
 
+    // Buses on a route leaving within a window of the day, earliest first.
+    // If none do, the next bus after the window opens is offered instead.
+    void searchByDeparture() {
+        String from = readLocation("Enter From Location: ");
+        String to = readLocation("Enter To Location: ");
+        System.out.print("Leaving from (HH:MM): ");
+        int earliest = JourneyPlanner.departure(sc.next());
+        System.out.print("Leaving by (HH:MM): ");
+        int latest = JourneyPlanner.departure(sc.next());
+        if (earliest < 0 || latest < 0) {
+            System.out.println("Please enter times as HH:MM, e.g. 06:00.");
+            return;
+        }
+        System.out.println("\nBuses from " + from + " to " + to + " leaving " + JourneyPlanner.clock(earliest)
+                + " to " + JourneyPlanner.clock(latest) + ":\n");
+
+        List<Bus> matches = service.searchDepartures(from, to, earliest, latest);
+        for (Bus bus : matches) bus.show();
+        if (!matches.isEmpty()) return;
+
+        System.out.println("================================");
+        System.out.println("No buses leave in that window.");
+        System.out.println("================================");
+        Bus next = service.nextDeparture(from, to, earliest);
+        if (next != null) {
+            System.out.println("The next one leaves at " + next.getTime()
+                    + (next.getDepartureMinutes() < earliest ? " the following day" : "") + ":");
+            next.show();
+        }
+    }
+
+    // Suggests journeys with a change of bus, leaving from now on
+    private void showConnections(String from, String to) {
+        LocalDateTime now = LocalDateTime.now();
+        int after = now.getHour() * 60 + now.getMinute();
+        JourneyPlanner.Journey fastest = service.planEarliest(from, to, now.toLocalDate(), after, 1);
+        if (fastest == null) return;
+        System.out.println("\nConnecting journeys:");
+        System.out.println("Fastest:\n" + fastest);
+        JourneyPlanner.Journey cheapest = service.planCheapest(from, to, now.toLocalDate(), after, 1);
+        if (cheapest != null && cheapest.fare < fastest.fare) {
+            System.out.println("Cheapest:\n" + cheapest);
+        }
+        System.out.println("Book each bus separately from the Book Ticket menu.");
+    }
+
+    // Reads a location and matches it against the cities buses serve.
+    // A partial or misspelt name is completed or corrected; if several
+    // cities fit, the passenger picks one.
+    private String readLocation(String prompt) {
+        System.out.print(prompt);
+        String typed = BusBookingSystem.readLine();
+        List<String> matches = service.suggestLocations(typed, 5);
+        if (matches.isEmpty()) return typed;
+        if (matches.size() == 1) {
+            if (!matches.get(0).equalsIgnoreCase(typed)) {
+                System.out.println("Showing results for " + matches.get(0));
+            }
+            return matches.get(0);
+        }
+        System.out.println("Did you mean:");
+        for (int i = 0; i < matches.size(); i++) {
+            System.out.println("  " + (i + 1) + ". " + matches.get(i));
+        }
+        System.out.print("Choose (1-" + matches.size() + "): ");
+        try {
+            int choice = Integer.parseInt(BusBookingSystem.readLine());
+            if (choice >= 1 && choice <= matches.size()) return matches.get(choice - 1);
+        } catch (NumberFormatException e) {
+            // fall through and search for what was typed
+        }
+        return typed;
+    }
+
     void showBus() {
-        if (AdminDashboard.busCount == 0) {
+        SearchCache.Result buses = service.showAll();
+        if (buses.isEmpty()) {
             System.out.println("================================");
             System.out.println("No buses available.");
             System.out.println("================================");
             return;
         }
         System.out.println("\n=== AVAILABLE BUSES ===\n");
-        for (int i = 0; i < AdminDashboard.busCount; i++) {
-            AdminDashboard.buses[i].show();
-        }
+        buses.print(System.out);
     }
 
     void busType() {
@@ -59,15 +123,10 @@ class Passenger extends User {
         String type = sc.next();
         System.out.println();
         
-        boolean found = false;
-        for (int i = 0; i < AdminDashboard.busCount; i++) {
-            if (AdminDashboard.buses[i].type.equalsIgnoreCase(type)) {
-                AdminDashboard.buses[i].show();
-                found = true;
-            }
-        }
+        SearchCache.Result matches = service.showType(type);
+        matches.print(System.out);
         
-        if (!found) {
+        if (matches.isEmpty()) {
             System.out.println("================================");
             System.out.println("No buses found for type: " + type);
             System.out.println("================================");
@@ -75,26 +134,19 @@ class Passenger extends User {
     }
 
     void bookTicket() {
+        SeatHold hold = null;
         try {
             System.out.println("\n=== BOOK TICKET ===");
             
             // Show available buses
-            System.out.print("Enter From Location: ");
-            String from = sc.next();
-            System.out.print("Enter To Location: ");
-            String to = sc.next();
+            String from = readLocation("Enter From Location: ");
+            String to = readLocation("Enter To Location: ");
             System.out.println("\nSearching buses from " + from + " to " + to + "...\n");
             
-            boolean found = false;
-            for (int i = 0; i < AdminDashboard.busCount; i++) {
-                if (AdminDashboard.buses[i].from.equalsIgnoreCase(from) && 
-                    AdminDashboard.buses[i].to.equalsIgnoreCase(to)) {
-                    AdminDashboard.buses[i].show();
-                    found = true;
-                }
-            }
+            SearchCache.Result matches = service.showRoute(from, to);
+            matches.print(System.out);
             
-            if (!found) {
+            if (matches.isEmpty()) {
                 System.out.println("================================");
                 System.out.println("No buses found for the given route.");
                 System.out.println("================================");
@@ -106,14 +158,7 @@ class Passenger extends User {
             System.out.print("\nEnter Bus ID: ");
             int busId = sc.nextInt();
             
-            Bus selectedBus = null;
-            for (int i = 0; i < AdminDashboard.busCount; i++) {
-                if (AdminDashboard.buses[i].getId() == busId) {
-                    selectedBus = AdminDashboard.buses[i];
-                    break;
-                }
-            }
-            
+            Bus selectedBus = service.findBus(busId);
             if (selectedBus == null) {
                 throw new InvalidBusException("Bus with ID " + busId + " not found!");
             }
@@ -124,6 +169,10 @@ class Passenger extends User {
             sc.nextLine(); // consume newline
             String name = sc.nextLine();
             
+            if (!BookingJournal.fits(name)) {
+                throw new Exception("Name is too long.");
+            }
+            
             System.out.print("Enter Gender (M/F/Other): ");
             String gender = sc.next();
             
@@ -139,39 +188,54 @@ class Passenger extends User {
             // Journey details
             System.out.print("\nEnter Journey Date (DD/MM/YYYY): ");
             String journeyDateStr = sc.next();
-            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy");
-            java.time.LocalDate journeyDate = java.time.LocalDate.parse(journeyDateStr, formatter);
+            java.time.LocalDate journeyDate = java.time.LocalDate.parse(journeyDateStr, Booking.DATE_FORMAT);
             if (journeyDate.isBefore(java.time.LocalDate.now())) {
                 throw new Exception("Journey date cannot be in the past.");
             }
+            if (journeyDate.isAfter(java.time.LocalDate.now().plusDays(Bus.BOOKING_HORIZON_DAYS))) {
+                throw new Exception("Bookings open only " + Bus.BOOKING_HORIZON_DAYS + " days in advance.");
+            }
             
             // Number of tickets
-            System.out.println("\nAvailable Seats: " + selectedBus.getAvailableSeats());
+            int availableSeats = selectedBus.getAvailableSeats(journeyDate);
+            System.out.println("\nAvailable Seats: " + availableSeats);
             System.out.print("Enter Number of Tickets: ");
             int numTickets = sc.nextInt();
             
-            if (numTickets > selectedBus.getAvailableSeats()) {
-                throw new InvalidSeatException("Only " + selectedBus.getAvailableSeats() + " seats available!");
+            if (numTickets <= 0) {
+                throw new InvalidSeatException("Number of tickets must be positive!");
+            }
+            if (numTickets > availableSeats) {
+                throw new InvalidSeatException("Only " + availableSeats + " seats available!");
             }
             
-            // Seat selection
-            int[] seats = new int[numTickets];
+            // Seat selection: each seat is held as soon as it is picked, so
+            // nobody else can take it while this passenger pays
+            hold = service.holdSeats(selectedBus, journeyDate);
             System.out.println("\n--- SEAT SELECTION ---");
-            for (int i = 0; i < numTickets; i++) {
-                while (true) {
-                    System.out.print("Select Seat " + (i + 1) + " (1-" + selectedBus.getTotalSeats() + "): ");
-                    int seat = sc.nextInt();
-                    if (!selectedBus.isSeatAvailable(seat)) {
+            System.out.println("1. Seat us together automatically");
+            System.out.println("2. Choose seats myself");
+            System.out.print("Enter choice: ");
+            if (sc.nextInt() == 1) {
+                if (hold.addGroup(numTickets) == null) {
+                    throw new InvalidSeatException("Only " + selectedBus.getAvailableSeats(journeyDate) + " seats available!");
+                }
+            } else {
+                for (int i = 0; i < numTickets; i++) {
+                    while (true) {
+                        System.out.print("Select Seat " + (i + 1) + " (1-" + selectedBus.getTotalSeats() + "): ");
+                        int seat = sc.nextInt();
+                        if (hold.add(seat)) break;
                         System.out.println("Seat " + seat + " is not available! Please choose another.");
-                    } else {
-                        seats[i] = seat;
-                        break;
                     }
                 }
             }
+            int[] seats = hold.getSeatNumbers();
+            System.out.println("Your seats: " + java.util.Arrays.toString(seats));
+            System.out.println("Seats held for " + (hold.getSecondsLeft() + 59) / 60 + " minutes.");
             
             // Create booking
-            Booking booking = new Booking(name, gender, age, contact, selectedBus, seats, journeyDate.format(formatter));
+            Booking booking = new Booking(name, gender, age, contact, selectedBus, seats, journeyDate);
             double fare = booking.calculateFare();
             
             // Show fare and confirm
@@ -205,23 +269,15 @@ class Passenger extends User {
             
             booking.setPaymentMethod(payMethod);
             
-            if (booking.processPayment()) {
-                // Book seats only after successful payment
-                for (int seat : seats) {
-                    selectedBus.bookSeat(seat);
-                }
-                
-                // Add booking to myBookings
-                Booking[] newBookings = new Booking[myBookingsCount + 1];
-                System.arraycopy(myBookings, 0, newBookings, 0, myBookingsCount);
-                newBookings[myBookingsCount] = booking;
-                myBookings = newBookings;
-                myBookingsCount++;
-                
+            BookingResult result = service.checkout(booking, hold);
+            if (result.isConfirmed()) {
+                phone = contact;
                 System.out.println("\n✓ Booking successful!");
                 booking.generateReceipt();
+            } else if (result.status == BookingResult.Status.SEATS_UNAVAILABLE) {
+                throw new InvalidSeatException(result.message);
             } else {
-                throw new PaymentFailedException("Payment failed. Please try again.");
+                throw new PaymentFailedException(result.message);
             }
             
         } catch (InvalidBusException | InvalidSeatException | PaymentFailedException e) {
@@ -229,62 +285,84 @@ class Passenger extends User {
         } catch (Exception e) {
             System.out.println("\n✗ An error occurred: " + e.getMessage());
             sc.nextLine(); // Consume the invalid input
+        } finally {
+            // Gives back the seats unless the booking went through
+            if (hold != null) hold.release();
         }
     }
     
     void cancelTicket() {
-        if (myBookingsCount == 0) {
+        String contact = myContact();
+        if (service.countByContact(contact) == 0) {
             System.out.println("No bookings found to cancel.");
             return;
         }
         
         System.out.println("\n=== YOUR BOOKINGS ===");
-        for (int i = 0; i < myBookingsCount; i++) {
-            Booking b = myBookings[i];
-            if (!b.isCancelled()) {
-                System.out.println("Booking ID: " + b.getBookingId());
+        for (int offset = 0; offset < service.countByContact(contact); offset += PAGE_SIZE) {
+            for (Booking b : service.findByContact(contact, offset, PAGE_SIZE)) {
+                if (!b.isCancelled()) {
+                    System.out.println("Booking ID: " + b.getBookingId());
+                }
             }
         }
         
         System.out.print("\nEnter Booking ID to cancel: ");
         int bookingId = sc.nextInt();
         
-        for (int i = 0; i < myBookingsCount; i++) {
-            Booking b = myBookings[i];
-            if (b.getBookingId() == bookingId && !b.isCancelled()) {
-                System.out.print("Hours before journey: ");
-                int hours = sc.nextInt();
-                
-                double refund = b.calculateRefund(hours);
-                System.out.println("Refund Amount: Rs." + refund);
-                
-                System.out.print("Confirm Cancellation? (yes/no): ");
-                String confirm = sc.next();
-                
-                if (confirm.equalsIgnoreCase("yes")) {
-                    b.cancelBooking(bookingId);
-                    System.out.println("Ticket cancelled successfully!");
-                    System.out.println("Refund of Rs." + refund + " will be processed in 5-7 business days.");
-                }
+        Booking b = service.findBooking(bookingId);
+        if (b == null || b.isCancelled() || !b.getContact().equals(contact)) {
+            System.out.println("Booking ID not found or already cancelled.");
+            return;
+        }
+        
+        System.out.print("Hours before journey: ");
+        int hours = sc.nextInt();
+        
+        double refund = b.calculateRefund(hours);
+        System.out.println("Refund Amount: Rs." + refund);
+        
+        System.out.print("Confirm Cancellation? (yes/no): ");
+        String confirm = sc.next();
+        
+        if (confirm.equalsIgnoreCase("yes")) {
+            if (service.cancelBooking(bookingId, hours) == null) {
+                System.out.println("Booking ID not found or already cancelled.");
                 return;
             }
+            System.out.println("Ticket cancelled successfully!");
+            System.out.println("Refund of Rs." + refund + " will be processed in 5-7 business days.");
         }
-        
-        System.out.println("Booking ID not found or already cancelled.");
     }
     
     void viewMyBookings() {
-        if (myBookingsCount == 0) {
+        String contact = myContact();
+        int total = service.countByContact(contact);
+        if (total == 0) {
             System.out.println("\nNo bookings found.");
             return;
         }
         
-        System.out.println("\n=== MY BOOKINGS ===");
-        for (int i = 0; i < myBookingsCount; i++) {
-            Booking b = myBookings[i];
-            System.out.println("Booking ID: " + b.getBookingId() + 
-                             " | Status: " + (b.isCancelled() ? "CANCELLED" : "CONFIRMED"));
+        System.out.println("\n=== MY BOOKINGS (" + total + ") ===");
+        for (int offset = 0; offset < total; offset += PAGE_SIZE) {
+            for (Booking b : service.findByContact(contact, offset, PAGE_SIZE)) {
+                System.out.println("Booking ID: " + b.getBookingId() + 
+                                 " | Status: " + (b.isCancelled() ? "CANCELLED" : "CONFIRMED"));
+            }
+            if (offset + PAGE_SIZE < total) {
+                System.out.print("Show more? (yes/no): ");
+                if (!sc.next().equalsIgnoreCase("yes")) break;
+            }
+        }
+    }
+    
+    // Bookings are kept by contact number; ask for it once per session
+    private String myContact() {
+        if (phone == null) {
+            System.out.print("Enter Contact Number (10 digits): ");
+            phone = sc.next();
         }
+        return phone;
     }
     
     @Override
@@ -307,10 +385,11 @@ class Passenger extends User {
             System.out.println("1. View Available Buses");
             System.out.println("2. Search Bus by Route");
             System.out.println("3. Search by Bus Type");
-            System.out.println("4. Book Ticket");
-            System.out.println("5. Cancel Ticket");
-            System.out.println("6. View My Bookings");
-            System.out.println("7. Back to Main Menu");
+            System.out.println("4. Search by Departure Time");
+            System.out.println("5. Book Ticket");
+            System.out.println("6. Cancel Ticket");
+            System.out.println("7. View My Bookings");
+            System.out.println("8. Back to Main Menu");
             System.out.print("Choose an option: ");
             
             choice = sc.nextInt();
@@ -326,15 +405,18 @@ class Passenger extends User {
                     busType();
                     break;
                 case 4:
-                    bookTicket();
+                    searchByDeparture();
                     break;
                 case 5:
-                    cancelTicket();
+                    bookTicket();
                     break;
                 case 6:
-                    viewMyBookings();
+                    cancelTicket();
                     break;
                 case 7:
+                    viewMyBookings();
+                    break;
+                case 8:
                     System.out.println("Returning to main menu...");
                     exit = true;
                     break;
@@ -0,0 +1,128 @@
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ============= Payment Gateway =============
+// What the payment pipeline needs from a card/UPI gateway. Calls never
+// block: they return futures that complete when the gateway answers.
+//
+// authorize() completes with an authorization id. A declined payment
+// completes exceptionally with PaymentFailedException and is final; any
+// other failure is treated as transient and may be retried, so gateways
+// must treat 'reference' as an idempotency key and answer a repeated
+// reference with the original outcome.
+interface PaymentGateway {
+    CompletableFuture<String> authorize(String reference, double amount, String method);
+
+    // Captures previously authorized payments in one call
+    CompletableFuture<Void> settle(List<String> authorizationIds);
+
+    // Gives a payment back: voids the authorization if it was not captured
+    // yet, otherwise refunds 'amount'
+    CompletableFuture<Void> reverse(String authorizationId, double amount);
+}
+
+// Thrown by a gateway for failures worth retrying
+class GatewayUnavailableException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public GatewayUnavailableException(String message) {
+        super(message);
+    }
+}
+
+// ============= Simulated Gateway =============
+// Local stand-in for a real gateway: answers after a random latency between
+// minLatency and maxLatency, fails transiently at failureRate and declines
+// at declineRate. Waiting is done with delayed executors, never by parking
+// a thread, so any number of payments can be in flight.
+class SimulatedGateway implements PaymentGateway {
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double failureRate;
+    private final double declineRate;
+    private final SplittableRandom random;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<String, CompletableFuture<String>> byReference = new ConcurrentHashMap<>();
+    private final Map<String, String> referenceById = new ConcurrentHashMap<>();
+    private final AtomicLong settled = new AtomicLong();
+    private final AtomicLong reversed = new AtomicLong();
+
+    SimulatedGateway(long minLatencyMillis, long maxLatencyMillis, double failureRate, double declineRate, long seed) {
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = Math.max(minLatencyMillis, maxLatencyMillis);
+        this.failureRate = failureRate;
+        this.declineRate = declineRate;
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public CompletableFuture<String> authorize(String reference, double amount, String method) {
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        CompletableFuture<String> earlier = byReference.putIfAbsent(reference, answer);
+        if (earlier != null) return earlier;
+
+        double roll;
+        long latency;
+        synchronized (random) {
+            roll = random.nextDouble();
+            latency = minLatencyMillis + (maxLatencyMillis > minLatencyMillis
+                    ? random.nextLong(maxLatencyMillis - minLatencyMillis + 1) : 0);
+        }
+        delay(latency).execute(() -> {
+            if (roll < failureRate) {
+                // Forget it, so a retry is a fresh attempt
+                byReference.remove(reference, answer);
+                answer.completeExceptionally(new GatewayUnavailableException("Gateway timed out"));
+            } else if (amount <= 0 || roll < failureRate + declineRate) {
+                byReference.remove(reference, answer);
+                answer.completeExceptionally(new PaymentFailedException("Payment declined by " + method + " provider"));
+            } else {
+                // Kept until settled, so a retried reference gets the same id
+                String id = "AUTH" + nextId.getAndIncrement();
+                referenceById.put(id, reference);
+                answer.complete(id);
+            }
+        });
+        return answer;
+    }
+
+    @Override
+    public CompletableFuture<Void> settle(List<String> authorizationIds) {
+        return CompletableFuture.runAsync(() -> {
+            for (String id : authorizationIds) {
+                String reference = referenceById.remove(id);
+                if (reference != null) byReference.remove(reference);
+            }
+            settled.addAndGet(authorizationIds.size());
+        }, delay(minLatencyMillis));
+    }
+
+    @Override
+    public CompletableFuture<Void> reverse(String authorizationId, double amount) {
+        return CompletableFuture.runAsync(() -> {
+            String reference = referenceById.remove(authorizationId);
+            if (reference != null) byReference.remove(reference);
+            reversed.incrementAndGet();
+        }, delay(minLatencyMillis));
+    }
+
+    // Payments captured so far
+    long getSettledCount() {
+        return settled.get();
+    }
+
+    // Payments given back so far
+    long getReversedCount() {
+        return reversed.get();
+    }
+
+    private static Executor delay(long millis) {
+        return CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS);
+    }
+}
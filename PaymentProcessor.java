@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ============= Payment Pipeline =============
+// Sends payments to a gateway without blocking any thread while they wait.
+//  - At most maxInFlight authorizations are outstanding at once; the rest
+//    queue here and start as earlier ones finish.
+//  - Each attempt is cut off after timeoutMillis.
+//  - Timeouts and transient gateway errors are retried, with a growing
+//    pause, up to maxAttempts. Declines are not retried.
+//  - Authorized payments are captured in batches of settleBatchSize, or
+//    every settleIntervalMillis, whichever comes first.
+// A charge completes with the authorization id, or exceptionally with
+// PaymentFailedException.
+class PaymentProcessor {
+    private final PaymentGateway gateway;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final int settleBatchSize;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final Queue<String> unsettled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger unsettledCount = new AtomicInteger();
+    private final ScheduledExecutorService settler;
+
+    PaymentProcessor(PaymentGateway gateway, int maxInFlight, long timeoutMillis, int maxAttempts,
+                     long retryDelayMillis, int settleBatchSize, long settleIntervalMillis) {
+        this.gateway = gateway;
+        this.maxInFlight = maxInFlight;
+        this.timeoutMillis = timeoutMillis;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+        this.settleBatchSize = settleBatchSize;
+        this.settler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payment-settlement");
+            t.setDaemon(true);
+            return t;
+        });
+        settler.scheduleWithFixedDelay(this::settle, settleIntervalMillis, settleIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Charges 'amount'. 'reference' must be unique per payment; it is what
+    // lets the gateway recognise a retry.
+    CompletableFuture<String> charge(String reference, double amount, String method) {
+        long start = System.nanoTime();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        attempt(reference, amount, method, 1, result);
+        return result.whenComplete((id, error) -> Metrics.record(Metrics.Op.PAYMENT, start, error == null));
+    }
+
+    private void attempt(String reference, double amount, String method, int attempt, CompletableFuture<String> result) {
+        submit(() -> call(reference, amount, method).whenComplete((authorizationId, error) -> {
+            release();
+            if (error == null) {
+                result.complete(authorizationId);
+                unsettled.add(authorizationId);
+                if (unsettledCount.incrementAndGet() >= settleBatchSize) settler.execute(this::settle);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof PaymentFailedException) {
+                result.completeExceptionally(cause);
+            } else if (attempt >= maxAttempts) {
+                String why = cause instanceof TimeoutException ? "no answer in " + timeoutMillis + " ms" : cause.getMessage();
+                result.completeExceptionally(new PaymentFailedException(
+                        "Payment gateway unavailable after " + attempt + " attempts (" + why + ")"));
+            } else {
+                CompletableFuture.delayedExecutor(retryDelayMillis * attempt, TimeUnit.MILLISECONDS)
+                        .execute(() -> attempt(reference, amount, method, attempt + 1, result));
+            }
+        }));
+    }
+
+    private CompletableFuture<String> call(String reference, double amount, String method) {
+        try {
+            return gateway.authorize(reference, amount, method).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // ----- bounded concurrency -----
+
+    private void submit(Runnable call) {
+        waiting.add(call);
+        startWaiting();
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        startWaiting();
+    }
+
+    // Starts queued calls while there is room. Both submitters and finishing
+    // calls come through here, each after its own change, so a queued call
+    // is never stranded.
+    private void startWaiting() {
+        while (!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) return;
+            if (!inFlight.compareAndSet(current, current + 1)) continue;
+            Runnable next = waiting.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+            } else {
+                next.run();
+            }
+        }
+    }
+
+    // Authorizations started but not yet answered
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    // ----- settlement -----
+
+    // Captures everything authorized so far, in batches
+    private void settle() {
+        while (true) {
+            List<String> batch = new ArrayList<>(settleBatchSize);
+            String id;
+            while (batch.size() < settleBatchSize && (id = unsettled.poll()) != null) batch.add(id);
+            if (batch.isEmpty()) return;
+            unsettledCount.addAndGet(-batch.size());
+            try {
+                gateway.settle(batch).join();
+            } catch (RuntimeException e) {
+                // Put them back for the next round
+                unsettled.addAll(batch);
+                unsettledCount.addAndGet(batch.size());
+                System.out.println("✗ Settlement failed, will retry: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    // Gives back a charge. One not captured yet is taken out of the next
+    // settlement first, so it is voided rather than captured and refunded.
+    CompletableFuture<Void> reverse(String authorizationId, double amount) {
+        if (unsettled.remove(authorizationId)) unsettledCount.decrementAndGet();
+        try {
+            return gateway.reverse(authorizationId, amount);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Settles what is outstanding and stops the settlement thread
+    void close() {
+        settler.shutdown();
+        settle();
+    }
+}
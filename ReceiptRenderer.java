@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// ============= Receipt Renderer =============
+// Renders tickets from a template compiled once into alternating literal
+// text and fields. Sections that are the same on every ticket (the
+// cancellation policy and terms) are merged into the literals when the
+// template is compiled, so rendering a ticket only appends the booking's
+// own values into one reused buffer. Output goes to any Appendable, or is
+// encoded straight into a reused byte buffer for a WritableByteChannel.
+//
+// A renderer keeps its buffers between calls and is not thread-safe; use
+// forThread() to get one for the current thread.
+class ReceiptRenderer {
+
+    static final String CANCELLATION_POLICY =
+            "\n--- CANCELLATION POLICY ---\n"
+            + "• 24+ hours before departure: 90% refund\n"
+            + "• 12-24 hours before: 50% refund\n"
+            + "• 6-12 hours before: 25% refund\n"
+            + "• Less than 6 hours: No refund\n";
+
+    static final String TERMS =
+            "\n--- TERMS & CONDITIONS ---\n"
+            + "1. Please arrive 15 minutes before departure\n"
+            + "2. Carry a valid ID proof during journey\n"
+            + "3. No refund for no-show passengers\n"
+            + "4. Management reserves the right to change timings\n";
+
+    static final String TICKET_TEMPLATE =
+            "=============================================\n"
+            + "         BUS TICKET - BOOKING CONFIRMED      \n"
+            + "=============================================\n"
+            + "\n--- PASSENGER DETAILS ---\n"
+            + "Name: ${name}\n"
+            + "Gender: ${gender}\n"
+            + "Age: ${age}\n"
+            + "Contact: ${contact}\n"
+            + "\n--- BOOKING DETAILS ---\n"
+            + "Booking ID: ${bookingId}\n"
+            + "Booking Date: ${bookingDate}\n"
+            + "Journey Date: ${journeyDate}\n"
+            + "\n--- BUS DETAILS ---\n"
+            + "Bus No: ${busNo}\n"
+            + "Bus Type: ${busType}\n"
+            + "Operator: ${operator}\n"
+            + "From: ${from} To: ${to}\n"
+            + "Departure Time: ${time}\n"
+            + "\n--- SEAT DETAILS ---\n"
+            + "Seat Numbers: ${seats}\n"
+            + "Total Tickets: ${tickets}\n"
+            + "\n--- PAYMENT DETAILS ---\n"
+            + "Base Fare per Seat: Rs.${baseFare}\n"
+            + "Subtotal: Rs.${subtotal}\n"
+            + "${discountLine}"
+            + "Total Payable: Rs.${total}\n"
+            + "Payment Method: ${paymentMethod}\n"
+            + "Payment Status: PAID\n"
+            + "${cancellationPolicy}"
+            + "${terms}"
+            + "=============================================\n"
+            + "     Thank you for choosing our service!     \n"
+            + "=============================================\n";
+
+    // Sections substituted once, at compile time
+    private static final Map<String, String> STATIC_SECTIONS = Map.of(
+            "cancellationPolicy", CANCELLATION_POLICY,
+            "terms", TERMS);
+
+    // Per-ticket values, appended without building intermediate Strings
+    enum Field {
+        NAME("name", (b, sb) -> sb.append(b.getPassengerName())),
+        GENDER("gender", (b, sb) -> sb.append(b.getGender())),
+        AGE("age", (b, sb) -> sb.append(b.getAge())),
+        CONTACT("contact", (b, sb) -> sb.append(b.getContact())),
+        BOOKING_ID("bookingId", (b, sb) -> sb.append(b.getBookingId())),
+        BOOKING_DATE("bookingDate", (b, sb) -> sb.append(b.getBookingDate())),
+        JOURNEY_DATE("journeyDate", (b, sb) -> Booking.DATE_FORMAT.formatTo(b.getJourneyDate(), sb)),
+        BUS_NO("busNo", (b, sb) -> sb.append(b.getBus().getBusNo())),
+        BUS_TYPE("busType", (b, sb) -> sb.append(b.getBus().getType())),
+        OPERATOR("operator", (b, sb) -> sb.append(b.getBus().getOperator())),
+        FROM("from", (b, sb) -> sb.append(b.getBus().getFrom())),
+        TO("to", (b, sb) -> sb.append(b.getBus().getTo())),
+        TIME("time", (b, sb) -> sb.append(b.getBus().getTime())),
+        SEATS("seats", (b, sb) -> {
+            for (int seat : b.getSeatNumbers()) sb.append(seat).append(' ');
+        }),
+        TICKETS("tickets", (b, sb) -> sb.append(b.getSeatNumbers().length)),
+        BASE_FARE("baseFare", (b, sb) -> sb.append(b.getBus().getBaseFare())),
+        SUBTOTAL("subtotal", (b, sb) -> sb.append(b.getBus().getBaseFare() * b.getSeatNumbers().length)),
+        DISCOUNT_LINE("discountLine", (b, sb) -> {
+            if (b.getDiscount() > 0) sb.append("Discount Applied: Rs.").append(b.getDiscount()).append('\n');
+        }),
+        TOTAL("total", (b, sb) -> sb.append(b.getFinalAmount())),
+        PAYMENT_METHOD("paymentMethod", (b, sb) -> sb.append(b.getPaymentMethod()));
+
+        final String key;
+        final BiConsumer<Booking, StringBuilder> writer;
+
+        Field(String key, BiConsumer<Booking, StringBuilder> writer) {
+            this.key = key;
+            this.writer = writer;
+        }
+
+        static Field forKey(String key) {
+            for (Field field : values()) {
+                if (field.key.equals(key)) return field;
+            }
+            throw new IllegalArgumentException("Unknown receipt field ${" + key + "}");
+        }
+    }
+
+    private static final ThreadLocal<ReceiptRenderer> PER_THREAD =
+            ThreadLocal.withInitial(() -> new ReceiptRenderer(TICKET_TEMPLATE));
+
+    private final String[] literals; // one more than fields: literal, field, literal, ...
+    private final Field[] fields;
+    private final StringBuilder text = new StringBuilder(2048);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+
+    ReceiptRenderer(String template) {
+        List<String> literalList = new ArrayList<>();
+        List<Field> fieldList = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (true) {
+            int start = template.indexOf("${", pos);
+            if (start < 0) break;
+            int end = template.indexOf('}', start);
+            if (end < 0) throw new IllegalArgumentException("Unclosed ${ at " + start);
+            literal.append(template, pos, start);
+            String key = template.substring(start + 2, end);
+            String section = STATIC_SECTIONS.get(key);
+            if (section != null) {
+                literal.append(section);
+            } else {
+                literalList.add(literal.toString());
+                fieldList.add(Field.forKey(key));
+                literal.setLength(0);
+            }
+            pos = end + 1;
+        }
+        literalList.add(literal.append(template, pos, template.length()).toString());
+        this.literals = literalList.toArray(new String[0]);
+        this.fields = fieldList.toArray(new Field[0]);
+    }
+
+    static ReceiptRenderer forThread() {
+        return PER_THREAD.get();
+    }
+
+    // Fills the template for one booking. The returned buffer is reused by
+    // the next call.
+    CharSequence render(Booking booking) {
+        text.setLength(0);
+        for (int i = 0; i < fields.length; i++) {
+            text.append(literals[i]);
+            fields[i].writer.accept(booking, text);
+        }
+        return text.append(literals[fields.length]);
+    }
+
+    void render(Booking booking, Appendable out) throws IOException {
+        out.append(render(booking));
+    }
+
+    void render(Booking booking, WritableByteChannel out) throws IOException {
+        encode(render(booking), out);
+        drain(out);
+    }
+
+    // Streams the tickets into one file, a blank line between tickets.
+    // Tickets are encoded straight into a 64KB buffer that is written
+    // whenever it fills. Returns the number of tickets written.
+    int export(Iterable<Booking> bookings, Path file) throws IOException {
+        int count = 0;
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Booking booking : bookings) {
+                if (count++ > 0) encode("\n", out);
+                encode(render(booking), out);
+            }
+            drain(out);
+        }
+        return count;
+    }
+
+    private void encode(CharSequence chars, WritableByteChannel out) throws IOException {
+        CharBuffer in = CharBuffer.wrap(chars);
+        while (true) {
+            CoderResult result = encoder.encode(in, bytes, false);
+            if (result.isOverflow()) {
+                drain(out);
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void drain(WritableByteChannel out) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) out.write(bytes);
+        bytes.clear();
+    }
+}
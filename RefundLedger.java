@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// ============= Refund Ledger =============
+// Every refund paid out, in the order it was recorded. Entries are added in
+// batches: one journal record and one lock acquisition per batch, however
+// many refunds it holds. Entries are kept in parallel arrays that grow by
+// doubling, and the running total is kept alongside them.
+class RefundLedger {
+    enum Reason {
+        PASSENGER,          // cancelled by the passenger
+        SERVICE_CANCELLED,  // the operator cancelled the bus for the day
+        BUS_DELETED,        // the bus was taken out of the fleet
+        SEATS_LOST;         // the seats were taken while the passenger paid
+
+        static final Reason[] ALL = values();
+    }
+
+    static final class Entry {
+        final int bookingId;
+        final int busId;
+        final double amount;
+        final long time; // epoch millis
+        final Reason reason;
+
+        Entry(int bookingId, int busId, double amount, long time, Reason reason) {
+            this.bookingId = bookingId;
+            this.busId = busId;
+            this.amount = amount;
+            this.time = time;
+            this.reason = reason;
+        }
+    }
+
+    private int[] bookingIds = new int[64];
+    private int[] busIds = new int[64];
+    private double[] amounts = new double[64];
+    private long[] times = new long[64];
+    private byte[] reasons = new byte[64];
+    private int size;
+    private double total;
+    private final ReentrantReadWriteLock rolling = new ReentrantReadWriteLock();
+
+    // Journals a batch of refunds, then adds it
+    void record(List<Entry> batch) {
+        record(batch, () -> AdminDashboard.journal.logRefunds(batch));
+    }
+
+    // Runs 'log', which must journal the batch, then adds the batch. Both
+    // happen under the read side of the roll lock: batches are journaled
+    // side by side, and only a snapshot rolling the journal holds them off,
+    // so a batch is always on one side of a snapshot.
+    void record(List<Entry> batch, Runnable log) {
+        if (batch.isEmpty()) return;
+        rolling.readLock().lock();
+        try {
+            log.run();
+            add(batch);
+        } finally {
+            rolling.readLock().unlock();
+        }
+    }
+
+    // Held while rolling the journal; no batch is part way recorded then
+    Lock rollLock() {
+        return rolling.writeLock();
+    }
+
+    // Adds a batch without journaling it, for recovery. Either way the
+    // refunds also go to the sales analytics.
+    synchronized void add(List<Entry> batch) {
+        ensure(size + batch.size());
+        for (Entry entry : batch) {
+            bookingIds[size] = entry.bookingId;
+            busIds[size] = entry.busId;
+            amounts[size] = entry.amount;
+            times[size] = entry.time;
+            reasons[size] = (byte) entry.reason.ordinal();
+            total += entry.amount;
+            size++;
+        }
+        AdminDashboard.analytics.refunded(batch, AdminDashboard.bookings, AdminDashboard.registry);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized double getTotalRefunded() {
+        return total;
+    }
+
+    // A page of entries, oldest first
+    synchronized List<Entry> page(int offset, int limit) {
+        if (offset < 0 || limit <= 0 || offset >= size) return List.of();
+        int end = (int) Math.min((long) offset + limit, size);
+        List<Entry> page = new ArrayList<>(end - offset);
+        for (int i = offset; i < end; i++) page.add(entry(i));
+        return page;
+    }
+
+    private Entry entry(int i) {
+        return new Entry(bookingIds[i], busIds[i], amounts[i], times[i], Reason.ALL[reasons[i]]);
+    }
+
+    private void ensure(int capacity) {
+        if (capacity <= bookingIds.length) return;
+        int grown = Math.max(capacity, bookingIds.length * 2);
+        bookingIds = Arrays.copyOf(bookingIds, grown);
+        busIds = Arrays.copyOf(busIds, grown);
+        amounts = Arrays.copyOf(amounts, grown);
+        times = Arrays.copyOf(times, grown);
+        reasons = Arrays.copyOf(reasons, grown);
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// ============= Route & Type Index =============
+// Hash index over the fleet so a search only touches the buses it returns.
+// Keys are normalized (trimmed, lower-cased) so lookups behave like the old
+// equalsIgnoreCase scans. Readers never lock; writers copy a single bucket.
+//
+// A route's bucket is kept in departure order, with the departure minutes
+// in an int array beside the buses (see Departures), so a time window is
+// a binary search for its start and a walk to its end.
+class RouteIndex {
+    static final int DAY_MINUTES = 24 * 60;
+
+    private final ConcurrentHashMap<String, Departures> byRoute = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<Bus>> byType = new ConcurrentHashMap<>();
+
+    // The buses of one route sorted by departure minute, buses whose time
+    // cannot be read (-1) first. Immutable: a change builds a new one.
+    static final class Departures {
+        final int[] minutes;
+        final Bus[] buses;
+
+        private Departures(int[] minutes, Bus[] buses) {
+            this.minutes = minutes;
+            this.buses = buses;
+        }
+
+        // Inserts the buses, each after any leaving at the same minute
+        Departures with(List<Bus> added) {
+            long[] keys = new long[added.size()];
+            for (int k = 0; k < keys.length; k++) {
+                keys[k] = ((long) added.get(k).getDepartureMinutes() << 32) | k;
+            }
+            Arrays.sort(keys);
+            int size = minutes.length + keys.length;
+            int[] m = new int[size];
+            Bus[] b = new Bus[size];
+            int i = 0, k = 0;
+            for (int out = 0; out < size; out++) {
+                if (k == keys.length || (i < minutes.length && minutes[i] <= (int) (keys[k] >> 32))) {
+                    m[out] = minutes[i];
+                    b[out] = buses[i++];
+                } else {
+                    m[out] = (int) (keys[k] >> 32);
+                    b[out] = added.get((int) keys[k++]);
+                }
+            }
+            return new Departures(m, b);
+        }
+
+        // Drops the bus, or returns null if it was the last one
+        Departures without(Bus bus) {
+            int i = 0;
+            while (i < buses.length && buses[i] != bus) i++;
+            if (i == buses.length) return this;
+            if (buses.length == 1) return null;
+            int[] m = new int[minutes.length - 1];
+            Bus[] b = new Bus[buses.length - 1];
+            System.arraycopy(minutes, 0, m, 0, i);
+            System.arraycopy(buses, 0, b, 0, i);
+            System.arraycopy(minutes, i + 1, m, i, m.length - i);
+            System.arraycopy(buses, i + 1, b, i, b.length - i);
+            return new Departures(m, b);
+        }
+
+        // Position of the first bus leaving at or after 'minute'
+        int first(int minute) {
+            int lo = 0, hi = minutes.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (minutes[mid] < minute) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // Buses leaving from 'earliest' to 'latest' inclusive, in order
+        List<Bus> between(int earliest, int latest) {
+            return view(first(Math.max(earliest, 0)), first(latest + 1));
+        }
+
+        List<Bus> view(int from, int to) {
+            return Collections.unmodifiableList(Arrays.asList(buses).subList(from, Math.max(from, to)));
+        }
+    }
+
+    private static final Departures NO_DEPARTURES = new Departures(new int[0], new Bus[0]);
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String routeKey(String from, String to) {
+        return normalize(from) + '\u0000' + normalize(to);
+    }
+
+    void add(Bus bus) {
+        addRoute(routeKey(bus.getFrom(), bus.getTo()), List.of(bus));
+        addTo(byType, normalize(bus.getType()), bus);
+    }
+
+    // Adds many buses, copying each bucket once rather than once per bus
+    void addAll(List<Bus> buses) {
+        Map<String, List<Bus>> routes = new HashMap<>();
+        Map<String, List<Bus>> types = new HashMap<>();
+        for (Bus bus : buses) {
+            routes.computeIfAbsent(routeKey(bus.getFrom(), bus.getTo()), k -> new ArrayList<>()).add(bus);
+            types.computeIfAbsent(normalize(bus.getType()), k -> new ArrayList<>()).add(bus);
+        }
+        routes.forEach(this::addRoute);
+        types.forEach((key, group) -> byType.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).addAll(group));
+    }
+
+    void remove(Bus bus) {
+        removeRoute(routeKey(bus.getFrom(), bus.getTo()), bus);
+        removeFrom(byType, normalize(bus.getType()), bus);
+    }
+
+    // Moves a bus whose route, departure time or type was edited in place.
+    // Its route entry is always placed again, as the time may have moved.
+    void update(Bus bus, String oldFrom, String oldTo, String oldType) {
+        removeRoute(routeKey(oldFrom, oldTo), bus);
+        addRoute(routeKey(bus.getFrom(), bus.getTo()), List.of(bus));
+
+        String oldTypeKey = normalize(oldType);
+        String newTypeKey = normalize(bus.getType());
+        if (!oldTypeKey.equals(newTypeKey)) {
+            removeFrom(byType, oldTypeKey, bus);
+            addTo(byType, newTypeKey, bus);
+        }
+    }
+
+    // Every bus on the route, in departure order
+    List<Bus> findByRoute(String from, String to) {
+        Departures route = departures(from, to);
+        return route.view(0, route.buses.length);
+    }
+
+    Departures departures(String from, String to) {
+        Departures found = byRoute.get(routeKey(from, to));
+        return found == null ? NO_DEPARTURES : found;
+    }
+
+    // Buses on the route leaving from 'earliest' to 'latest' (minutes after
+    // midnight, inclusive) in departure order. A window running past
+    // midnight, such as 22:00 to 02:00, lists the late buses first.
+    List<Bus> findDepartures(String from, String to, int earliest, int latest) {
+        Departures route = departures(from, to);
+        if (earliest <= latest) return route.between(earliest, latest);
+        List<Bus> found = new ArrayList<>(route.between(earliest, DAY_MINUTES - 1));
+        found.addAll(route.between(0, latest));
+        return found;
+    }
+
+    // The first bus on the route leaving at or after 'after', or else the
+    // first one the next day; null if no bus on it has a readable time
+    Bus nextDeparture(String from, String to, int after) {
+        Departures route = departures(from, to);
+        int i = route.first(after);
+        if (i == route.buses.length) i = route.first(0);
+        return i == route.buses.length ? null : route.buses[i];
+    }
+
+    List<Bus> findByType(String type) {
+        return typeView(byType.get(normalize(type)));
+    }
+
+    private void addRoute(String key, List<Bus> added) {
+        byRoute.compute(key, (k, current) -> (current == null ? NO_DEPARTURES : current).with(added));
+    }
+
+    private void removeRoute(String key, Bus bus) {
+        byRoute.computeIfPresent(key, (k, current) -> current.without(bus));
+    }
+
+    private static void addTo(ConcurrentHashMap<String, CopyOnWriteArrayList<Bus>> index, String key, Bus bus) {
+        index.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(bus);
+    }
+
+    private static void removeFrom(ConcurrentHashMap<String, CopyOnWriteArrayList<Bus>> index, String key, Bus bus) {
+        index.computeIfPresent(key, (k, list) -> {
+            list.remove(bus);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private static List<Bus> typeView(CopyOnWriteArrayList<Bus> list) {
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// ============= Search Cache =============
+// Bounded LRU cache of search results keyed by query: a route, a bus type,
+// or the whole fleet. A result holds the matching buses and their show()
+// blocks already rendered, split around the availability figure, which is
+// the only part that changes as seats are booked. It is read live from the
+// seat bitmap when the result is printed.
+//
+// The registry invalidates precisely: adding, editing or removing a bus
+// drops the entries for its route and type (old and new) and the fleet
+// listing, nothing else. Each invalidation is stamped from a counter, and a
+// search that started before the latest stamp on its key does not store its
+// result, so a search racing with an edit can never cache the old state.
+class SearchCache {
+    static final String ALL = "all";
+
+    // One cached search
+    static final class Result {
+        final List<Bus> buses;
+        private final String[] heads; // show() text up to today's availability
+        private final String[] tails; // and after it
+
+        private Result(List<Bus> buses) {
+            this.buses = buses;
+            this.heads = new String[buses.size()];
+            this.tails = new String[buses.size()];
+            for (int i = 0; i < buses.size(); i++) {
+                String[] parts = buses.get(i).showParts();
+                heads[i] = parts[0];
+                tails[i] = parts[1];
+            }
+        }
+
+        boolean isEmpty() {
+            return buses.isEmpty();
+        }
+
+        // Prints every bus as show() would, in one write
+        void print(PrintStream out) {
+            LocalDate today = LocalDate.now();
+            StringBuilder sb = new StringBuilder(buses.size() * 400);
+            for (int i = 0; i < heads.length; i++) {
+                sb.append(heads[i]).append(buses.get(i).getAvailableSeats(today)).append(tails[i]);
+            }
+            out.print(sb);
+        }
+    }
+
+    private final LinkedHashMap<String, Result> entries; // guarded by this
+    private final int capacity;
+    private final ConcurrentHashMap<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    SearchCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                if (size() <= SearchCache.this.capacity) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    static String routeKey(String from, String to) {
+        return "route:" + RouteIndex.routeKey(from, to);
+    }
+
+    static String typeKey(String type) {
+        return "type:" + RouteIndex.normalize(type);
+    }
+
+    // The cached result for 'key', or runs 'search' and caches what it finds
+    Result get(String key, Supplier<List<Bus>> search) {
+        synchronized (this) {
+            Result cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        long started = clock.get();
+        Result result = new Result(List.copyOf(search.get()));
+        if (capacity > 0) {
+            synchronized (this) {
+                if (invalidatedAt.getOrDefault(key, 0L) <= started) entries.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    // Drops the entries that list a bus: its route, its type and the fleet
+    void invalidate(Bus bus) {
+        invalidate(bus.getFrom(), bus.getTo(), bus.getType());
+    }
+
+    // Drops the entries that list any of 'buses', each entry once
+    void invalidate(Collection<Bus> buses) {
+        Set<String> keys = new HashSet<>();
+        for (Bus bus : buses) {
+            keys.add(routeKey(bus.getFrom(), bus.getTo()));
+            keys.add(typeKey(bus.getType()));
+        }
+        keys.add(ALL);
+        for (String key : keys) invalidate(key);
+    }
+
+    void invalidate(String from, String to, String type) {
+        invalidate(routeKey(from, to));
+        invalidate(typeKey(type));
+        invalidate(ALL);
+    }
+
+    private void invalidate(String key) {
+        long stamp = clock.incrementAndGet();
+        synchronized (this) {
+            invalidatedAt.put(key, stamp);
+            if (entries.remove(key) != null) invalidations.increment();
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d entries, %d hits, %d misses (%.1f%% hit rate), %d evicted, %d invalidated",
+                size(), capacity, getHits(), getMisses(), getHitRate() * 100, evictions.sum(), invalidations.sum());
+    }
+}
@@ -0,0 +1,120 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// ============= Seat Hold =============
+// Seats set aside for one passenger while they confirm and pay. Held seats
+// look booked to everyone else. The hold ends when it is confirmed after
+// payment, released by the passenger, or expires after the hold time, in
+// which case the seats go back on sale. Expiry is driven by one shared
+// timing wheel, so an abandoned checkout costs no thread.
+class SeatHold {
+    // 100ms ticks, 512 buckets: one turn of the wheel is about 51 seconds
+    private static final TimingWheel EXPIRY = new TimingWheel("seat-hold-expiry", 100, TimeUnit.MILLISECONDS, 512);
+
+    private final Bus bus;
+    private final LocalDate date;
+    private final SeatMap seats;
+    private final long expiresAt;
+    private final TimingWheel.Timeout timeout;
+    private int[] seatNumbers = new int[4];
+    private int count;
+    private boolean active = true;
+
+    SeatHold(Bus bus, LocalDate date, SeatMap seats) {
+        this(bus, date, seats, TimeUnit.MINUTES.toMillis(BusBookingSystem.HOLD_MINUTES));
+    }
+
+    SeatHold(Bus bus, LocalDate date, SeatMap seats, long ttlMillis) {
+        this.bus = bus;
+        this.date = date;
+        this.seats = seats;
+        this.expiresAt = System.currentTimeMillis() + ttlMillis;
+        this.timeout = EXPIRY.schedule(this::expire, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Holds one more seat. Returns false if the seat is out of range, taken
+    // or already in this hold, or if the hold has ended.
+    synchronized boolean add(int seatNo) {
+        if (!active || seatNo < 1 || seatNo > bus.getTotalSeats() || contains(seatNo)) return false;
+        if (!seats.tryHold(seatNo)) {
+            Metrics.seatConflict(bus.getId());
+            return false;
+        }
+        if (count == seatNumbers.length) seatNumbers = Arrays.copyOf(seatNumbers, count * 2);
+        seatNumbers[count++] = seatNo;
+        return true;
+    }
+
+    // Holds 'count' more seats, seated together as far as possible (see
+    // SeatMap.findGroup). Returns their numbers, or null if not enough
+    // seats are free or the hold has ended.
+    synchronized int[] addGroup(int count) {
+        if (!active || count <= 0) return null;
+        while (true) {
+            int[] group = seats.findGroup(count);
+            if (group == null) return null;
+            // Another booker may take one of them first; look again if so
+            if (!seats.tryHold(group)) {
+                Metrics.seatConflict(bus.getId());
+                continue;
+            }
+            if (count + this.count > seatNumbers.length) {
+                seatNumbers = Arrays.copyOf(seatNumbers, Math.max(seatNumbers.length * 2, count + this.count));
+            }
+            System.arraycopy(group, 0, seatNumbers, this.count, count);
+            this.count += count;
+            return group;
+        }
+    }
+
+    // Ends the hold and keeps its seats as booked. Returns false if the hold
+    // had already expired or been released, in which case the seats may now
+    // belong to someone else.
+    synchronized boolean confirm() {
+        if (!active) return false;
+        active = false;
+        timeout.cancel();
+        for (int i = 0; i < count; i++) seats.confirmHold(seatNumbers[i]);
+        return true;
+    }
+
+    // Gives the seats back; does nothing once the hold has ended
+    synchronized void release() {
+        if (!active) return;
+        timeout.cancel();
+        free();
+    }
+
+    private synchronized void expire() {
+        if (active) free();
+    }
+
+    private void free() {
+        active = false;
+        for (int i = 0; i < count; i++) seats.releaseHold(seatNumbers[i]);
+    }
+
+    private boolean contains(int seatNo) {
+        for (int i = 0; i < count; i++) {
+            if (seatNumbers[i] == seatNo) return true;
+        }
+        return false;
+    }
+
+    synchronized boolean isActive() {
+        return active;
+    }
+
+    synchronized int[] getSeatNumbers() {
+        return Arrays.copyOf(seatNumbers, count);
+    }
+
+    // Whole seconds left before the hold expires
+    long getSecondsLeft() {
+        return Math.max(0, (expiresAt - System.currentTimeMillis()) / 1000);
+    }
+
+    Bus getBus() { return bus; }
+    LocalDate getDate() { return date; }
+}
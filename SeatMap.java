@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// ============= Lock-free Seat Bitmap =============
+// One bit per seat packed into 64-bit words. Seat n lives in bit (n - 1).
+// A set bit means the seat is taken. Every change is a CAS on a single word,
+// so bookers on different buses (or different words of the same bus) never
+// block each other.
+// Seats on hold during checkout are taken like booked ones, and are also
+// marked in a second bitmap so snapshots can leave them out: a hold is never
+// journaled, and must not outlive a restart.
+class SeatMap {
+    private final int totalSeats;
+    private final AtomicLongArray words;
+    private long[] held; // guarded by this, allocated on the first hold
+
+    SeatMap(int totalSeats) {
+        this.totalSeats = totalSeats;
+        this.words = new AtomicLongArray((totalSeats + 63) >>> 6);
+    }
+
+    // Rebuilds a bitmap from words saved in a snapshot
+    SeatMap(int totalSeats, long[] savedWords) {
+        this.totalSeats = totalSeats;
+        long[] sized = Arrays.copyOf(savedWords, (totalSeats + 63) >>> 6);
+        this.words = new AtomicLongArray(sized);
+    }
+
+    // Copies the words one by one, without held seats; concurrent bookings
+    // may land either side
+    synchronized long[] copyWords() {
+        long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = words.get(i);
+            if (held != null) copy[i] &= ~held[i];
+        }
+        return copy;
+    }
+
+    int getTotalSeats() {
+        return totalSeats;
+    }
+
+    boolean isFree(int seatNo) {
+        int bit = seatNo - 1;
+        return (words.get(bit >>> 6) & (1L << bit)) == 0;
+    }
+
+    // Claims a single seat. Returns false if it was already taken.
+    boolean tryReserve(int seatNo) {
+        int bit = seatNo - 1;
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long current = words.get(index);
+            if ((current & mask) != 0) return false;
+            if (words.compareAndSet(index, current, current | mask)) return true;
+        }
+    }
+
+    // Takes a seat on hold. Returns false if it was already taken.
+    synchronized boolean tryHold(int seatNo) {
+        if (!tryReserve(seatNo)) return false;
+        if (held == null) held = new long[words.length()];
+        int bit = seatNo - 1;
+        held[bit >>> 6] |= 1L << bit;
+        return true;
+    }
+
+    // Takes several seats on hold, all or none. Returns false if any was
+    // already taken.
+    synchronized boolean tryHold(int[] seatNumbers) {
+        if (reserve(seatNumbers) != 0) return false;
+        if (held == null) held = new long[words.length()];
+        for (int seatNo : seatNumbers) {
+            int bit = seatNo - 1;
+            held[bit >>> 6] |= 1L << bit;
+        }
+        return true;
+    }
+
+    // Turns a held seat into a booked one
+    synchronized void confirmHold(int seatNo) {
+        int bit = seatNo - 1;
+        held[bit >>> 6] &= ~(1L << bit);
+    }
+
+    // Frees a held seat for other bookers
+    synchronized void releaseHold(int seatNo) {
+        confirmHold(seatNo);
+        release(seatNo);
+    }
+
+    // Frees a single seat. Returns false if it was not taken.
+    boolean release(int seatNo) {
+        int bit = seatNo - 1;
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long current = words.get(index);
+            if ((current & mask) == 0) return false;
+            if (words.compareAndSet(index, current, current & ~mask)) return true;
+        }
+    }
+
+    // All-or-nothing claim of several seats. Seats sharing a word are claimed
+    // with one CAS; if any word conflicts, the words already claimed are rolled
+    // back. Seat numbers must be in range and distinct.
+    // Returns 0 on success, otherwise the first seat number found taken.
+    int reserve(int[] seatNumbers) {
+        int[] sorted = seatNumbers.clone();
+        Arrays.sort(sorted);
+
+        int i = 0;
+        while (i < sorted.length) {
+            int index = (sorted[i] - 1) >>> 6;
+            long mask = 0;
+            int j = i;
+            while (j < sorted.length && ((sorted[j] - 1) >>> 6) == index) {
+                mask |= 1L << (sorted[j] - 1);
+                j++;
+            }
+
+            long taken = claimWord(index, mask);
+            if (taken != 0) {
+                rollback(sorted, i);
+                return Long.numberOfTrailingZeros(taken) + (index << 6) + 1;
+            }
+            i = j;
+        }
+        return 0;
+    }
+
+    // Claims seats for many bookings on the date from one read of the
+    // bitmap, then one CAS per word changed. picks[r] lists the seats of
+    // booking r, or is null for counts[r] seats together (see findGroup);
+    // picked seats must be in range and distinct. Each booking gets all its
+    // seats or none, apart from the others. Returns the seats of each, or
+    // null for a booking that could not be seated; its problems[r] is then
+    // the first picked seat found taken, or the seats that were left free.
+    int[][] reserveBatch(int[][] picks, int[] counts, int[] problems) {
+        while (true) {
+            long[] before = new long[words.length()];
+            for (int i = 0; i < before.length; i++) before[i] = words.get(i);
+            long[] after = before.clone();
+            int[][] seated = new int[picks.length][];
+            for (int r = 0; r < picks.length; r++) {
+                int[] seats = picks[r] != null ? picks[r].clone() : findGroup(after, counts[r]);
+                if (seats == null) {
+                    problems[r] = countFree(after);
+                    continue;
+                }
+                int taken = firstTaken(after, seats);
+                if (taken != 0) {
+                    problems[r] = taken;
+                    continue;
+                }
+                for (int seat : seats) after[(seat - 1) >>> 6] |= 1L << (seat - 1);
+                seated[r] = seats;
+            }
+            if (swapWords(before, after)) return seated;
+            // Another booker changed a word meanwhile; read it again
+        }
+    }
+
+    // Moves every word that differs from 'before' to 'after', all or none
+    private boolean swapWords(long[] before, long[] after) {
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] == after[i] || words.compareAndSet(i, before[i], after[i])) continue;
+            for (int j = 0; j < i; j++) {
+                long added = after[j] & ~before[j];
+                if (added == 0) continue;
+                while (true) {
+                    long current = words.get(j);
+                    if (words.compareAndSet(j, current, current & ~added)) break;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static int firstTaken(long[] taken, int[] seats) {
+        for (int seat : seats) {
+            if ((taken[(seat - 1) >>> 6] & (1L << (seat - 1))) != 0) return seat;
+        }
+        return 0;
+    }
+
+    private int countFree(long[] taken) {
+        int free = 0;
+        for (int i = 0; i < taken.length; i++) free += Long.bitCount(~taken[i] & validMask(i));
+        return free;
+    }
+
+    // Frees several seats. Seats sharing a word are freed with one CAS.
+    void release(int[] seatNumbers) {
+        int[] sorted = seatNumbers.clone();
+        Arrays.sort(sorted);
+        clearWords(sorted, sorted.length);
+    }
+
+    // Lowest-numbered free seats, found a word at a time. Returns null if
+    // fewer than 'count' seats are free. Does not claim them.
+    int[] findFree(int count) {
+        int[] found = new int[count];
+        int n = 0;
+        for (int index = 0; index < words.length() && n < count; index++) {
+            long free = ~words.get(index) & validMask(index);
+            while (free != 0 && n < count) {
+                found[n++] = (index << 6) + Long.numberOfTrailingZeros(free) + 1;
+                free &= free - 1;
+            }
+        }
+        return n == count ? found : null;
+    }
+
+    // Seats for a group of 'count', found a run of free seats at a time
+    // rather than a seat at a time: the shortest run of at least 'count'
+    // free seats side by side, lowest-numbered among equals, so longer runs
+    // stay whole for bigger groups. If no run is long enough, the 'count'
+    // free seats spanning the fewest seat numbers. Returns null if fewer
+    // than 'count' seats are free. Does not claim them.
+    int[] findGroup(int count) {
+        long[] taken = new long[words.length()];
+        for (int i = 0; i < taken.length; i++) taken[i] = words.get(i);
+        return findGroup(taken, count);
+    }
+
+    // The same, over a copy of the words
+    private int[] findGroup(long[] taken, int count) {
+        int bestStart = -1, bestLength = Integer.MAX_VALUE;
+        int runStart = -1; // seat index the current run began at, or -1
+        int free = 0;
+        scan:
+        for (int index = 0; index < taken.length; index++) {
+            long word = ~taken[index] & validMask(index);
+            free += Long.bitCount(word);
+            int base = index << 6;
+            int bit = 0;
+            while (bit < 64) {
+                if (runStart < 0) {
+                    long rest = word >>> bit;
+                    if (rest == 0) break;
+                    bit += Long.numberOfTrailingZeros(rest);
+                    runStart = base + bit;
+                }
+                // The run goes on for as many set bits as follow; the zeros
+                // shifted in from the top stop it at the end of the word
+                bit += Long.numberOfTrailingZeros(~(word >>> bit));
+                if (bit < 64) {
+                    int length = base + bit - runStart;
+                    if (length >= count && length < bestLength) {
+                        bestStart = runStart;
+                        bestLength = length;
+                        if (length == count) break scan;
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+        if (runStart >= 0 && bestLength != count) {
+            int length = totalSeats - runStart;
+            if (length >= count && length < bestLength) bestStart = runStart;
+        }
+
+        if (bestStart >= 0) {
+            int[] group = new int[count];
+            for (int i = 0; i < count; i++) group[i] = bestStart + i + 1;
+            return group;
+        }
+        return free >= count ? findCluster(taken, count) : null;
+    }
+
+    // The 'count' free seats with the smallest distance from first to last
+    private int[] findCluster(long[] taken, int count) {
+        int[] free = new int[totalSeats];
+        int n = 0;
+        for (int index = 0; index < taken.length; index++) {
+            long word = ~taken[index] & validMask(index);
+            while (word != 0) {
+                free[n++] = (index << 6) + Long.numberOfTrailingZeros(word) + 1;
+                word &= word - 1;
+            }
+        }
+        if (n < count) return null;
+        int best = 0;
+        for (int i = 1; i + count <= n; i++) {
+            if (free[i + count - 1] - free[i] < free[best + count - 1] - free[best]) best = i;
+        }
+        return Arrays.copyOfRange(free, best, best + count);
+    }
+
+    // Bits of a word that correspond to real seats
+    private long validMask(int index) {
+        int seatsInWord = totalSeats - (index << 6);
+        return seatsInWord >= 64 ? -1L : (1L << seatsInWord) - 1;
+    }
+
+    int countBooked() {
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    int countAvailable() {
+        return totalSeats - countBooked();
+    }
+
+    // Sets every bit of mask in one CAS, or returns the bits already taken.
+    private long claimWord(int index, long mask) {
+        while (true) {
+            long current = words.get(index);
+            long taken = current & mask;
+            if (taken != 0) return taken;
+            if (words.compareAndSet(index, current, current | mask)) return 0;
+        }
+    }
+
+    // Clears the first 'count' seats of an ascending seat list.
+    private void clearWords(int[] sorted, int count) {
+        int i = 0;
+        while (i < count) {
+            int index = (sorted[i] - 1) >>> 6;
+            long mask = 0;
+            while (i < count && ((sorted[i] - 1) >>> 6) == index) {
+                mask |= 1L << (sorted[i] - 1);
+                i++;
+            }
+            while (true) {
+                long current = words.get(index);
+                if (words.compareAndSet(index, current, current & ~mask)) break;
+            }
+        }
+    }
+
+    private void rollback(int[] sorted, int claimedCount) {
+        clearWords(sorted, claimedCount);
+    }
+}
@@ -0,0 +1,383 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// ============= Binary Snapshots =============
+// A snapshot is the whole fleet (every Bus field plus its per-date seat
+// words and cancelled dates), every live booking, the refund ledger and the booking-id lease in
+// one binary file, ending in a CRC32.
+// It is named after the journal segment that was started when it was
+// taken, so startup loads the snapshot and replays only that segment and
+// later ones.
+//
+// Taking a snapshot never blocks bookings: the journal rolls to a new
+// segment first and the state is then copied while bookings continue.
+// Anything that changes during the copy is also in the new segment, and
+// journal replay is idempotent, so replaying it on top gives the exact
+// final state.
+class SnapshotStore {
+    private static final int MAGIC = 0x42534E50; // "BSNP"
+    private static final int VERSION = 4; // 2 added the booking-id lease, 3 the refund ledger, 4 cancelled dates
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int KEEP = 2; // newest snapshots kept, for fallback
+
+    private final Path dir;
+    private final BookingJournal journal;
+    private ScheduledExecutorService scheduler;
+
+    SnapshotStore(Path dir, BookingJournal journal) {
+        this.dir = dir;
+        this.journal = journal;
+    }
+
+    static Path snapshotPath(Path dir, long seq) {
+        return dir.resolve(String.format("snapshot-%016d.bin", seq));
+    }
+
+    private List<Long> listSnapshots() throws IOException {
+        List<Long> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(f -> {
+                String name = f.getFileName().toString();
+                if (name.startsWith("snapshot-") && name.endsWith(".bin")) {
+                    snapshots.add(Long.parseLong(name.substring(9, name.length() - 4)));
+                }
+            });
+        }
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    // ----- loading -----
+
+    // Loads the newest intact snapshot into the registry, booking store and
+    // refund ledger. Returns the journal segment to replay from (1 when
+    // there is none).
+    long load(BusRegistry registry, BookingStore bookings, RefundLedger refunds) throws IOException {
+        List<Long> snapshots = listSnapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            long seq = snapshots.get(i);
+            if (loadFile(snapshotPath(dir, seq), registry, bookings, refunds)) {
+                return seq;
+            }
+            System.out.println("✗ Snapshot " + seq + " is damaged, trying an older one.");
+        }
+        return 1;
+    }
+
+    private boolean loadFile(Path file, BusRegistry registry, BookingStore bookings,
+                             RefundLedger refunds) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < 28) return false;
+            MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, (int) size - 4));
+            int version = buf.getInt(4);
+            if (buf.getInt(0) != MAGIC || version < 1 || version > VERSION
+                    || buf.getInt((int) size - 4) != (int) crc.getValue()) {
+                return false;
+            }
+
+            buf.position(8);
+            buf.getLong(); // journal segment, also encoded in the file name
+            buf.getLong(); // creation time
+            int lastBookingId = version >= 2 ? buf.getInt() : 0;
+            Decoder decoder = new Decoder(buf);
+
+            // Every bus is checked before any is added, so a bad file
+            // leaves the registry as it was for an older snapshot
+            int busCount = buf.getInt();
+            List<Bus> buses = new ArrayList<>(busCount);
+            Set<Integer> ids = new HashSet<>();
+            for (int b = 0; b < busCount; b++) {
+                Bus bus = decoder.readBus(version);
+                buses.add(bus);
+                if (!ids.add(bus.getId()) || registry.contains(bus.getId())) {
+                    for (Bus built : buses) built.release();
+                    return false;
+                }
+            }
+            registry.addAll(buses);
+            if (version >= 2) bookings.skipPast(lastBookingId);
+
+            int bookingCount = buf.getInt();
+            for (int k = 0; k < bookingCount; k++) {
+                Booking booking = decoder.readBooking(registry);
+                if (booking != null) bookings.add(booking);
+            }
+
+            if (version >= 3) {
+                int refundCount = buf.getInt();
+                List<RefundLedger.Entry> entries = new ArrayList<>(refundCount);
+                for (int r = 0; r < refundCount; r++) {
+                    entries.add(new RefundLedger.Entry(buf.getInt(), buf.getInt(), buf.getDouble(),
+                            buf.getLong(), RefundLedger.Reason.ALL[buf.get()]));
+                }
+                refunds.add(entries);
+            }
+            return true;
+        }
+    }
+
+    // Decodes records from the mapped file. Strings are read through one
+    // scratch array, and values that repeat from record to record (operator,
+    // route, gender, payment method...) reuse the previous String instead
+    // of allocating a new one.
+    private static class Decoder {
+        final ByteBuffer buf;
+        byte[] scratch = new byte[256];
+        final Field busNo = new Field(), operator = new Field(), type = new Field(), from = new Field(),
+                to = new Field(), time = new Field(), name = new Field(), gender = new Field(),
+                contact = new Field(), bookingDate = new Field(), method = new Field();
+
+        Decoder(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        Bus readBus(int version) {
+            Bus bus = new Bus(buf.getInt(), read(busNo), read(operator), read(type), read(from), read(to),
+                    read(time), buf.getInt(), buf.getDouble(), buf.getDouble());
+            int days = buf.getInt();
+            for (int d = 0; d < days; d++) {
+                LocalDate date = LocalDate.ofEpochDay(buf.getLong());
+                long[] words = new long[buf.getInt()];
+                // Bulk copy straight out of the mapped file
+                LongBuffer longs = buf.asLongBuffer();
+                longs.get(words);
+                buf.position(buf.position() + words.length * 8);
+                bus.restoreInventory(date, words);
+            }
+            int cancelled = version >= 4 ? buf.getInt() : 0;
+            for (int d = 0; d < cancelled; d++) {
+                bus.cancelDeparture(LocalDate.ofEpochDay(buf.getLong()));
+            }
+            return bus;
+        }
+
+        Booking readBooking(BusRegistry registry) {
+            int bookingId = buf.getInt();
+            Bus bus = registry.get(buf.getInt());
+            String passengerName = read(name);
+            String passengerGender = read(gender);
+            int age = buf.getInt();
+            String passengerContact = read(contact);
+            int[] seats = BookingJournal.getInts(buf);
+            LocalDate journeyDate = LocalDate.ofEpochDay(buf.getLong());
+            String date = read(bookingDate);
+            String paymentMethod = read(method);
+            double discount = buf.getDouble();
+            double finalAmount = buf.getDouble();
+            if (bus == null) return null;
+            return new Booking(bookingId, passengerName, passengerGender, age, passengerContact, bus, seats,
+                    journeyDate, date, paymentMethod, discount, finalAmount);
+        }
+
+        String read(Field field) {
+            int length = buf.getShort() & 0xFFFF;
+            if (length > scratch.length) scratch = new byte[length];
+            buf.get(scratch, 0, length);
+            if (field.value == null || !Arrays.equals(scratch, 0, length, field.bytes, 0, field.length)) {
+                if (field.bytes.length < length) field.bytes = new byte[length];
+                System.arraycopy(scratch, 0, field.bytes, 0, length);
+                field.length = length;
+                field.value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+            return field.value;
+        }
+    }
+
+    // Last value decoded for one string column
+    private static class Field {
+        byte[] bytes = new byte[32];
+        int length;
+        String value;
+    }
+
+    // ----- writing -----
+
+    // Rolls the journal, writes a snapshot of the current state and prunes
+    // the snapshots and journal segments it makes obsolete.
+    Path write(BusRegistry registry, BookingStore bookings, RefundLedger refunds) throws IOException {
+        long seq;
+        int recorded;
+        // Refunds are journaled and added under the read side of the roll
+        // lock, so rolling under its write side puts every refund either in
+        // this copy or in the new segment, never both: unlike bookings,
+        // refunds do not replay idempotently
+        refunds.rollLock().lock();
+        try {
+            seq = journal.roll();
+            recorded = refunds.size();
+        } finally {
+            refunds.rollLock().unlock();
+        }
+        // Entries are only ever appended, so the first 'recorded' are
+        // the ones from before the roll
+        List<RefundLedger.Entry> ledger = refunds.page(0, recorded);
+        Bus[] fleet = registry.toArray();
+        List<Booking> live = new ArrayList<>();
+        for (Booking booking : bookings.all()) {
+            if (!booking.isCancelled()) live.add(booking);
+        }
+
+        Path target = snapshotPath(dir, seq);
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer w = new Writer(out);
+            w.ensure(32);
+            w.buf.putInt(MAGIC).putInt(VERSION).putLong(seq).putLong(System.currentTimeMillis());
+            w.buf.putInt(bookings.getLeasedTo()).putInt(fleet.length);
+
+            for (Bus bus : fleet) {
+                byte[][] strings = {
+                    BookingJournal.utf8(bus.getBusNo()), BookingJournal.utf8(bus.getOperator()),
+                    BookingJournal.utf8(bus.getType()), BookingJournal.utf8(bus.getFrom()),
+                    BookingJournal.utf8(bus.getTo()), BookingJournal.utf8(bus.getTime())
+                };
+                Map<LocalDate, long[]> inventory = bus.copyInventory();
+                List<LocalDate> cancelled = bus.getCancelledDates();
+                w.ensure(4);
+                w.buf.putInt(bus.getId());
+                for (byte[] s : strings) {
+                    w.ensure(2 + s.length);
+                    BookingJournal.putString(w.buf, s);
+                }
+                w.ensure(24);
+                w.buf.putInt(bus.getTotalSeats()).putDouble(bus.getDistanceKm()).putDouble(bus.getPricePerKm());
+                w.buf.putInt(inventory.size());
+                for (Map.Entry<LocalDate, long[]> day : inventory.entrySet()) {
+                    long[] words = day.getValue();
+                    w.ensure(12);
+                    w.buf.putLong(day.getKey().toEpochDay()).putInt(words.length);
+                    for (long word : words) {
+                        w.ensure(8);
+                        w.buf.putLong(word);
+                    }
+                }
+                w.ensure(4 + 8 * cancelled.size());
+                w.buf.putInt(cancelled.size());
+                for (LocalDate date : cancelled) w.buf.putLong(date.toEpochDay());
+            }
+
+            w.ensure(4);
+            w.buf.putInt(live.size());
+            for (Booking booking : live) {
+                byte[] name = BookingJournal.utf8(booking.getPassengerName());
+                byte[] gender = BookingJournal.utf8(booking.getGender());
+                byte[] contact = BookingJournal.utf8(booking.getContact());
+                byte[] bookingDate = BookingJournal.utf8(booking.getBookingDate());
+                byte[] method = BookingJournal.utf8(booking.getPaymentMethod());
+                int[] seats = booking.getSeatNumbers();
+                w.ensure(8 + 2 + name.length + 2 + gender.length + 4 + 2 + contact.length
+                        + 4 + 4 * seats.length + 8 + 2 + bookingDate.length + 2 + method.length + 16);
+                w.buf.putInt(booking.getBookingId()).putInt(booking.getBus().getId());
+                BookingJournal.putString(w.buf, name);
+                BookingJournal.putString(w.buf, gender);
+                w.buf.putInt(booking.getAge());
+                BookingJournal.putString(w.buf, contact);
+                BookingJournal.putInts(w.buf, seats);
+                w.buf.putLong(booking.getJourneyDate().toEpochDay());
+                BookingJournal.putString(w.buf, bookingDate);
+                BookingJournal.putString(w.buf, method);
+                w.buf.putDouble(booking.getDiscount()).putDouble(booking.getFinalAmount());
+            }
+
+            w.ensure(4);
+            w.buf.putInt(ledger.size());
+            for (RefundLedger.Entry entry : ledger) {
+                w.ensure(25);
+                w.buf.putInt(entry.bookingId).putInt(entry.busId).putDouble(entry.amount)
+                        .putLong(entry.time).put((byte) entry.reason.ordinal());
+            }
+            w.finish();
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        prune();
+        return target;
+    }
+
+    // Keeps the newest snapshots and the journal segments they still need
+    private void prune() throws IOException {
+        List<Long> snapshots = listSnapshots();
+        if (snapshots.size() < KEEP) return;
+        long oldestKept = snapshots.get(snapshots.size() - KEEP);
+        for (long seq : snapshots) {
+            if (seq < oldestKept) Files.deleteIfExists(snapshotPath(dir, seq));
+        }
+        journal.deleteSegmentsBefore(oldestKept);
+    }
+
+    // Takes a snapshot every 'minutes' on a background thread
+    void schedule(long minutes, BusRegistry registry, BookingStore bookings, RefundLedger refunds) {
+        if (minutes <= 0 || !journal.isEnabled()) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "snapshot-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                write(registry, bookings, refunds);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("✗ Snapshot failed: " + e.getMessage());
+            }
+        }, minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    void shutdown() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    // Buffers output in one reusable block and checksums it on the way out
+    private static class Writer {
+        final FileChannel out;
+        final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final CRC32 crc = new CRC32();
+
+        Writer(FileChannel out) {
+            this.out = out;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) drain();
+        }
+
+        void drain() throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while (buf.hasRemaining()) out.write(buf);
+            buf.clear();
+        }
+
+        void finish() throws IOException {
+            drain();
+            buf.putInt((int) crc.getValue());
+            buf.flip();
+            while (buf.hasRemaining()) out.write(buf);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ============= Hashed Timing Wheel =============
+// Runs short tasks after a delay using one background thread, however many
+// are pending. Time is cut into ticks; each tick owns a bucket of the wheel
+// and a timeout lands in the bucket of the tick it expires on, counting down
+// whole turns of the wheel until its turn comes. Scheduling and cancelling
+// are O(1) and never block: new and cancelled timeouts are handed to the
+// worker through queues and only the worker touches the buckets.
+// Deadlines are accurate to one tick; tasks run on the worker thread and
+// must be quick.
+class TimingWheel {
+
+    // A scheduled task. Cancelling after it has started running has no effect.
+    static final class Timeout {
+        private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline; // nanos since the wheel started
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        // Owned by the worker thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout next, prev;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        // Returns false if the task already ran or was already cancelled
+        boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    // Doubly linked list of the timeouts due on one tick
+    private static final class Bucket {
+        Timeout head, tail;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            if (head == null) {
+                head = tail = t;
+            } else {
+                tail.next = t;
+                t.prev = tail;
+                tail = t;
+            }
+        }
+
+        Timeout remove(Timeout t) {
+            Timeout next = t.next;
+            if (t.prev != null) t.prev.next = next;
+            if (next != null) next.prev = t.prev;
+            if (t == head) head = next;
+            if (t == tail) tail = t.prev;
+            t.prev = t.next = null;
+            t.bucket = null;
+            return next;
+        }
+
+        void expire() {
+            Timeout t = head;
+            while (t != null) {
+                if (t.rounds <= 0 || t.isCancelled()) {
+                    Timeout next = remove(t);
+                    if (t.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+                        run(t);
+                    }
+                    t = next;
+                } else {
+                    t.rounds--;
+                    t = t.next;
+                }
+            }
+        }
+    }
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final long startTime = System.nanoTime();
+    private Thread worker;
+    private volatile boolean stopped;
+
+    // 'size' is rounded up to a power of two
+    TimingWheel(String name, long tickDuration, TimeUnit unit, int size) {
+        this.name = name;
+        this.tickNanos = unit.toNanos(tickDuration);
+        int length = Integer.highestOneBit(Math.max(size, 1) * 2 - 1);
+        this.buckets = new Bucket[length];
+        for (int i = 0; i < length; i++) buckets[i] = new Bucket();
+        this.mask = length - 1;
+    }
+
+    // Runs 'task' once 'delay' has passed, unless cancelled first
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) throw new IllegalStateException("Timing wheel " + name + " is stopped");
+        start();
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(delay));
+        added.add(timeout);
+        return timeout;
+    }
+
+    // Stops the worker; pending tasks never run
+    void stop() {
+        stopped = true;
+        Thread running;
+        synchronized (this) {
+            running = worker;
+        }
+        if (running != null) running.interrupt();
+    }
+
+    // The worker is started lazily so a wheel nobody uses costs no thread
+    private synchronized void start() {
+        if (worker != null) return;
+        worker = new Thread(this::work, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void work() {
+        long tick = 0;
+        while (!stopped) {
+            if (!waitForTick(tick)) break;
+            removeCancelled();
+            transferAdded(tick);
+            buckets[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    // Sleeps until the end of the given tick; false if stopped meanwhile
+    private boolean waitForTick(long tick) {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepNanos = deadline - now;
+            if (sleepNanos <= 0) return true;
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (stopped) return false;
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout t;
+        while ((t = cancelled.poll()) != null) {
+            if (t.bucket != null) t.bucket.remove(t);
+        }
+    }
+
+    // Places newly scheduled timeouts in their buckets. Anything already
+    // overdue goes in the current bucket and fires this tick.
+    private void transferAdded(long tick) {
+        Timeout t;
+        while ((t = added.poll()) != null) {
+            if (t.isCancelled()) continue;
+            long due = t.deadline / tickNanos;
+            t.rounds = (due - tick) / buckets.length;
+            buckets[(int) (Math.max(due, tick) & mask)].add(t);
+        }
+    }
+
+    private static void run(Timeout t) {
+        try {
+            t.task.run();
+        } catch (RuntimeException e) {
+            System.err.println("Timed task failed: " + e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package busbooking;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Fare, refund and receipt work done for every ticket
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FareBenchmark {
+    @Param({"25", "65"})
+    int age;
+
+    Booking booking;
+    PrintStream console;
+    int hours;
+
+    // A 500-result search page quoted for two parties
+    List<Bus> page;
+    int[][] mixes = {{2, 0, 0}, {2, 1, 1}};
+    double[] quotes = new double[500 * 2];
+
+    @Setup
+    public void setup() {
+        Bus bus = Fleets.bus(7);
+        booking = new Booking("Asha Patil", "F", age, "9876543210", bus, new int[] {3, 4, 5}, Fleets.journeyDate());
+        booking.setPaymentMethod("UPI");
+        booking.calculateFare();
+        page = new ArrayList<>();
+        for (int id = 1; id <= 500; id++) page.add(Fleets.bus(id));
+        // Receipts print to System.out; measure the rendering, not the terminal
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public double calculateFare() {
+        return booking.calculateFare();
+    }
+
+    @Benchmark
+    public double calculateRefund() {
+        hours = (hours + 5) % 48;
+        return booking.calculateRefund(hours);
+    }
+
+    @Benchmark
+    public double[] quoteSearchPage() {
+        return FareEngine.quote(page, mixes, quotes);
+    }
+
+    @Benchmark
+    public void generateReceipt() {
+        booking.generateReceipt();
+    }
+
+    // Receipt rendered into the reused buffer, no console involved
+    @Benchmark
+    public int renderReceipt() {
+        return ReceiptRenderer.forThread().render(booking).length();
+    }
+}
@@ -0,0 +1,49 @@
+package busbooking;
+
+import java.time.LocalDate;
+
+// Builds synthetic fleets for the benchmarks: buses spread evenly over
+// every ordered pair of a fixed set of cities, with a mix of bus types.
+final class Fleets {
+    static final String[] CITIES = {
+        "Mumbai", "Pune", "Delhi", "Jaipur", "Agra", "Lucknow", "Kanpur", "Nagpur", "Indore", "Bhopal",
+        "Surat", "Ahmedabad", "Vadodara", "Rajkot", "Nashik", "Aurangabad", "Solapur", "Kolhapur", "Goa", "Mangalore",
+        "Bengaluru", "Mysuru", "Chennai", "Madurai", "Coimbatore", "Hyderabad", "Vijayawada", "Vizag", "Kochi", "Trivandrum"
+    };
+    static final String[] TYPES = {"AC", "NonAC", "Sleeper", "Express"};
+    static final int SEATS = 60;
+
+    private Fleets() {}
+
+    static String from(int i) {
+        return CITIES[i % CITIES.length];
+    }
+
+    static String to(int i) {
+        int pair = i / CITIES.length;
+        return CITIES[(i % CITIES.length + 1 + pair % (CITIES.length - 1)) % CITIES.length];
+    }
+
+    static Bus bus(int id) {
+        return new Bus(id, "MH" + id, "Operator " + (id % 50), TYPES[id % TYPES.length], from(id), to(id),
+                String.format("%02d:%02d", (id / 60) % 24, id % 60), SEATS, 100 + id % 900, 1.5 + (id % 4) * 0.5);
+    }
+
+    // Replaces the shared fleet with 'size' fresh buses
+    static BusRegistry install(int size) {
+        BusRegistry registry = new BusRegistry();
+        for (int id = 1; id <= size; id++) {
+            try {
+                registry.add(bus(id));
+            } catch (InvalidBusException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        AdminDashboard.registry = registry;
+        return registry;
+    }
+
+    static LocalDate journeyDate() {
+        return LocalDate.now().plusDays(7);
+    }
+}
@@ -0,0 +1,63 @@
+package busbooking;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Many threads booking and cancelling on the same bus and date
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotBusBenchmark {
+    Bus bus;
+    LocalDate date;
+
+    @Setup
+    public void setup() {
+        bus = Fleets.bus(1);
+        date = Fleets.journeyDate();
+    }
+
+    // Each thread takes any free seat and gives it back
+    @Benchmark
+    @Threads(8)
+    public void bookAnySeat() throws InvalidSeatException {
+        int[] seats = bus.reserveAnySeats(date, 1);
+        bus.cancelSeat(date, seats[0]);
+    }
+
+    // Threads race for the same few seat pairs; losers see a conflict
+    @Benchmark
+    @Threads(8)
+    public void contendForSamePair(ThreadSeats mine, Blackhole bh) {
+        try {
+            bus.reserveSeats(date, mine.pair);
+            bus.cancelSeat(date, mine.pair[0]);
+            bus.cancelSeat(date, mine.pair[1]);
+            bh.consume(true);
+        } catch (InvalidSeatException e) {
+            bh.consume(false);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int readAvailability() {
+        return bus.getAvailableSeats(date);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadSeats {
+        int[] pair;
+
+        @Setup
+        public void setup() {
+            int first = 1 + (int) (Thread.currentThread().getId() % 4) * 2;
+            pair = new int[] {first, first + 1};
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package busbooking;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Earliest-arrival and cheapest journey queries, and the cost of a query
+// that first has to fold a fleet change into the timetable
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class JourneyBenchmark {
+    @Param({"1000", "100000"})
+    int fleetSize;
+
+    BookingService service;
+    BusRegistry registry;
+    LocalDate date;
+    int next = 1;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        registry = Fleets.install(fleetSize);
+        service = new BookingService();
+        date = Fleets.journeyDate();
+        service.planEarliest(Fleets.CITIES[0], Fleets.CITIES[1], date, 0, 1); // builds the timetable
+    }
+
+    @Benchmark
+    public JourneyPlanner.Journey earliest() {
+        int i = next++;
+        return service.planEarliest(Fleets.from(i), Fleets.from(i * 7 + 3), date, i % 1440, 1);
+    }
+
+    @Benchmark
+    public JourneyPlanner.Journey cheapest() {
+        int i = next++;
+        return service.planCheapest(Fleets.from(i), Fleets.from(i * 7 + 3), date, i % 1440, 1);
+    }
+
+    // An edited bus is merged back into the timetable before the query
+    @Benchmark
+    public JourneyPlanner.Journey earliestAfterUpdate() {
+        int i = next++;
+        Bus bus = registry.get(i % fleetSize + 1);
+        registry.reindex(bus, bus.getFrom(), bus.getTo(), bus.getType());
+        return service.planEarliest(Fleets.from(i), Fleets.from(i * 7 + 3), date, i % 1440, 1);
+    }
+}
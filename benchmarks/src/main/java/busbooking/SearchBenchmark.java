@@ -0,0 +1,49 @@
+package busbooking;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Route, type and id lookups against fleets of increasing size
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    @Param({"100", "10000", "1000000"})
+    int fleetSize;
+
+    BookingService service;
+    int next = 1;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Fleets.install(fleetSize);
+        service = new BookingService();
+    }
+
+    @Benchmark
+    public List<Bus> searchRoute() {
+        int i = next++ % fleetSize + 1;
+        return service.searchRoute(Fleets.from(i), Fleets.to(i));
+    }
+
+    // The same route searches served from the search cache
+    @Benchmark
+    public SearchCache.Result cachedRoute() {
+        int i = next++ % fleetSize + 1;
+        return service.showRoute(Fleets.from(i), Fleets.to(i));
+    }
+
+    @Benchmark
+    public List<Bus> searchType() {
+        return service.searchType(Fleets.TYPES[next++ & 3]);
+    }
+
+    @Benchmark
+    public Bus findById() {
+        return service.findBus(next++ % fleetSize + 1);
+    }
+}
@@ -0,0 +1,61 @@
+package busbooking;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Single-threaded seat operations on one bus
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SeatBenchmark {
+    Bus bus;
+    LocalDate date;
+    int seat = 1;
+
+    @Setup
+    public void setup() throws InvalidSeatException {
+        bus = Fleets.bus(1);
+        date = Fleets.journeyDate();
+        // Half full, so availability counting sees a realistic bitmap
+        for (int s = 2; s <= Fleets.SEATS; s += 2) bus.bookSeat(date, s);
+    }
+
+    @Benchmark
+    public void bookAndCancelSeat() throws InvalidSeatException {
+        bus.bookSeat(date, seat);
+        bus.cancelSeat(date, seat);
+        seat += 2;
+        if (seat > Fleets.SEATS) seat = 1;
+    }
+
+    @Benchmark
+    public void reserveAndCancelGroup() throws InvalidSeatException {
+        int[] group = bus.reserveAnySeats(date, 4);
+        for (int s : group) bus.cancelSeat(date, s);
+    }
+
+    // A group of ten seated together, then given back
+    @Benchmark
+    public void reserveAndCancelGroupOfTen() throws InvalidSeatException {
+        bus.releaseSeats(date, bus.reserveGroup(date, 10));
+    }
+
+    // Checkout hold placed on one seat and given back
+    @Benchmark
+    public void holdAndRelease() throws InvalidSeatException {
+        SeatHold hold = bus.holdSeats(date);
+        hold.add(seat);
+        hold.release();
+        seat += 2;
+        if (seat > Fleets.SEATS) seat = 1;
+    }
+
+    @Benchmark
+    public int getAvailableSeats() {
+        return bus.getAvailableSeats(date);
+    }
+}